@@ -0,0 +1,307 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Benchmark driver for the programs in <code>examples/</code>.</p>
+ * 
+ * <p>Usage:</p>
+ * <pre>
+ * java -cp build:build/bench ExampleBench [options] suite-file
+ * 
+ *   -warmup n       number of warmup runs (default 2)
+ *   -runs n         number of measured runs (default 5)
+ *   -only name,...  run only the named benchmarks
+ *   -baseline file  compare with the results in file, which must have an entry for every benchmark, or none
+ *   -tolerance p    report a regression if time or allocation grow by more than p percent (default 10)
+ *   -save file      write the results to file, in the format of the baseline
+ * </pre>
+ * 
+ * <p>Every line of the suite file names a benchmark, the main class and the arguments,
+ * separated by white space. Empty lines and lines starting with <code>#</code> are ignored.</p>
+ * 
+ * <p>Every run loads the compiled Frege code with a new class loader, so that
+ * top level values are evaluated again, just like in a new JVM. Only the
+ * classes of <code>frege.runtime</code> are shared, so the warmup runs make sure that
+ * the runtime is compiled by the JIT. 
+ * The programs run on a thread with a stack of 1 GB, and with large stack threads in
+ * the runtime switched off, so that the memory allocated by them can be measured. 
+ * Their standard output is discarded.</p>
+ * 
+ * <p>For every benchmark, the median and the minimum wall clock time,
+ * the memory allocated, and the number of garbage collections and the time spent with them
+ * is reported. With <code>-baseline</code>, the exit code is 1 if there was a regression.
+ * When the baseline has no entry for some benchmark, nothing is measured, and the exit code is 1, too.
+ * A baseline without any entries, like the one in a fresh checkout, is not compared with,
+ * the results are only reported.</p>
+ */
+public class ExampleBench {
+
+	/** A benchmark from the suite file */
+	static final class Bench {
+		final String name, main;
+		final String[] args;
+		Bench(final String name, final String main, final String[] args) {
+			this.name = name; this.main = main; this.args = args;
+		}
+	}
+
+	/** The measurements of one benchmark */
+	static final class Result {
+		double medianMs, minMs, allocMb, gcCount, gcMs;
+		String format() {
+			return String.format((java.util.Locale) null, "%.1f\t%.1f\t%.1f\t%.1f\t%.1f", 
+					medianMs, minMs, allocMb, gcCount, gcMs);
+		}
+		static Result parse(final String[] cols) {
+			final Result r = new Result();
+			r.medianMs = Double.parseDouble(cols[1]);
+			r.minMs    = Double.parseDouble(cols[2]);
+			r.allocMb  = Double.parseDouble(cols[3]);
+			r.gcCount  = Double.parseDouble(cols[4]);
+			r.gcMs     = Double.parseDouble(cols[5]);
+			return r;
+		}
+	}
+
+	/**
+	 * <p>Loads everything except the runtime and the Java library with precedence.</p>
+	 */
+	static final class Isolated extends URLClassLoader {
+		Isolated(final URL[] urls, final ClassLoader parent) { super(urls, parent); }
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			if (name.startsWith("java.") || name.startsWith("frege.runtime.")) 
+				return super.loadClass(name, resolve);
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> c = findLoadedClass(name);
+				if (c == null) {
+					try {
+						c = findClass(name);
+					}
+					catch (ClassNotFoundException e) {
+						return super.loadClass(name, resolve);
+					}
+				}
+				if (resolve) resolveClass(c);
+				return c;
+			}
+		}
+	}
+
+	static final PrintStream realOut = System.out;
+	static final PrintStream nullOut = new PrintStream(new OutputStream() {
+		@Override public void write(int b) {}
+		@Override public void write(byte[] b, int off, int len) {}
+	});
+
+	static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/** The sum of the memory allocated by all live threads */
+	static long allocated() {
+		long sum = 0;
+		for (final long a : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+			if (a > 0) sum += a;
+		return sum;
+	}
+
+	static long gcCount() {
+		long sum = 0;
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			sum += Math.max(0, gc.getCollectionCount());
+		return sum;
+	}
+
+	static long gcMillis() {
+		long sum = 0;
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			sum += Math.max(0, gc.getCollectionTime());
+		return sum;
+	}
+
+	/**
+	 * Run the main method of a benchmark once, on a new thread with a large stack.
+	 * 
+	 * @return the allocated bytes
+	 */
+	static long runOnce(final Bench b, final URL[] cp) throws Throwable {
+		final Isolated loader = new Isolated(cp, ExampleBench.class.getClassLoader());
+		final Method main = loader.loadClass(b.main).getMethod("main", String[].class);
+		final Throwable[] failure = new Throwable[1];
+		final long[] alloc = new long[1];
+		final Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				final long a0 = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+				try {
+					main.invoke(null, (Object) b.args.clone());
+				}
+				catch (InvocationTargetException e) { failure[0] = e.getCause(); }
+				catch (Throwable e)                 { failure[0] = e; }
+				alloc[0] = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - a0;
+			}
+		}, "bench-" + b.name, 1L << 30);
+		final long others = allocated();
+		t.start();
+		t.join();
+		// add allocations of other threads, like fork/join workers
+		final long rest = allocated() - others;
+		loader.close();
+		if (failure[0] != null) throw failure[0];
+		return alloc[0] + Math.max(0, rest);
+	}
+
+	static Result measure(final Bench b, final URL[] cp, final int warmup, final int runs) throws Throwable {
+		for (int i = 0; i < warmup; i++) runOnce(b, cp);
+		final double[] ms = new double[runs];
+		long alloc = 0;
+		final long gc0 = gcCount(), gct0 = gcMillis();
+		for (int i = 0; i < runs; i++) {
+			final long t0 = System.nanoTime();
+			alloc += runOnce(b, cp);
+			ms[i] = (System.nanoTime() - t0) / 1e6;
+		}
+		final Result r = new Result();
+		Arrays.sort(ms);
+		r.medianMs = runs % 2 == 1 ? ms[runs/2] : (ms[runs/2-1] + ms[runs/2]) / 2;
+		r.minMs    = ms[0];
+		r.allocMb  = alloc / (double) runs / (1 << 20);
+		r.gcCount  = (gcCount() - gc0) / (double) runs;
+		r.gcMs     = (gcMillis() - gct0) / (double) runs;
+		return r;
+	}
+
+	static List<String[]> readColumns(final String file) throws IOException {
+		final List<String[]> lines = new ArrayList<String[]>();
+		final BufferedReader rd = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = rd.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) continue;
+				lines.add(line.split("\\s+"));
+			}
+		}
+		finally {
+			rd.close();
+		}
+		return lines;
+	}
+
+	static void usage() {
+		System.err.println("usage: java ExampleBench [-warmup n] [-runs n] [-only name,...] "
+				+ "[-baseline file] [-tolerance percent] [-save file] suite-file");
+		System.exit(2);
+	}
+
+	public static void main(final String[] argv) throws Throwable {
+		int warmup = 2, runs = 5;
+		double tolerance = 10;
+		String baseline = null, save = null, suite = null;
+		List<String> only = null;
+		for (int i = 0; i < argv.length; i++) {
+			final String a = argv[i];
+			if (a.startsWith("-") && i+1 == argv.length) usage();
+			if      (a.equals("-warmup"))    warmup = Integer.parseInt(argv[++i]);
+			else if (a.equals("-runs"))      runs = Integer.parseInt(argv[++i]);
+			else if (a.equals("-tolerance")) tolerance = Double.parseDouble(argv[++i]);
+			else if (a.equals("-baseline"))  baseline = argv[++i];
+			else if (a.equals("-save"))      save = argv[++i];
+			else if (a.equals("-only"))      only = Arrays.asList(argv[++i].split(","));
+			else if (a.startsWith("-"))      usage();
+			else suite = a;
+		}
+		if (suite == null || runs < 1) usage();
+
+		// the Frege runtime must not start threads of its own for deep stacks
+		System.setProperty("frege.stack", "0");
+
+		final String[] cpe = System.getProperty("java.class.path").split(File.pathSeparator);
+		final URL[] cp = new URL[cpe.length];
+		for (int i = 0; i < cpe.length; i++) cp[i] = new File(cpe[i]).toURI().toURL();
+
+		final Map<String, Result> base = new LinkedHashMap<String, Result>();
+		if (baseline != null && new File(baseline).exists())
+			for (final String[] cols : readColumns(baseline)) base.put(cols[0], Result.parse(cols));
+
+		final List<Bench> benches = new ArrayList<Bench>();
+		for (final String[] cols : readColumns(suite)) {
+			final Bench b = new Bench(cols[0], cols[1], Arrays.copyOfRange(cols, 2, cols.length));
+			if (only == null || only.contains(b.name)) benches.add(b);
+		}
+
+		// a benchmark without baseline could never fail, so refuse to run
+		if (baseline != null && base.isEmpty())
+			System.err.println("The baseline " + baseline + " is empty, results are not compared."
+					+ " Record it with \"make bench-baseline\".");
+		else if (baseline != null) {
+			final List<String> missing = new ArrayList<String>();
+			for (final Bench b : benches) if (!base.containsKey(b.name)) missing.add(b.name);
+			if (!missing.isEmpty()) {
+				System.err.println("No baseline for " + missing + " in " + baseline 
+						+ ", record it with \"make bench-baseline\".");
+				System.exit(1);
+			}
+		}
+
+		final Map<String, Result> results = new LinkedHashMap<String, Result>();
+		int regressions = 0;
+		realOut.println("# name\tmedian_ms\tmin_ms\talloc_mb\tgc_count\tgc_ms\tvs. baseline");
+		for (final Bench b : benches) {
+			final Result r;
+			System.setOut(nullOut);
+			try {
+				r = measure(b, cp, warmup, runs);
+			}
+			catch (Throwable t) {
+				System.setOut(realOut);
+				realOut.println(b.name + "\tFAILED: " + t);
+				regressions++;
+				continue;
+			}
+			finally {
+				System.setOut(realOut);
+			}
+			results.put(b.name, r);
+			String cmp = "";
+			final Result o = base.get(b.name);
+			if (o != null) {
+				final double dt = 100 * (r.medianMs / o.medianMs - 1);
+				final double da = o.allocMb > 0 ? 100 * (r.allocMb / o.allocMb - 1) : 0;
+				final boolean bad = dt > tolerance || da > tolerance;
+				if (bad) regressions++;
+				cmp = String.format((java.util.Locale) null, "time %+.1f%%, alloc %+.1f%%%s", 
+						dt, da, bad ? "  REGRESSION" : "");
+			}
+			realOut.println(b.name + "\t" + r.format() + "\t" + cmp);
+		}
+
+		if (save != null) {
+			final PrintWriter w = new PrintWriter(save, "UTF-8");
+			w.println("# Results of benchmarks/examples/ExampleBench, written by -save");
+			w.println("# name\tmedian_ms\tmin_ms\talloc_mb\tgc_count\tgc_ms");
+			for (final Map.Entry<String, Result> e : results.entrySet())
+				w.println(e.getKey() + "\t" + e.getValue().format());
+			w.close();
+		}
+		if (baseline != null && regressions > 0) {
+			realOut.println(regressions + " regression(s).");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package frege.runtime.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frege.runtime.Delayed;
+
+/**
+ * <p>Cost of evaluating lazy values.</p>
+ * 
+ * <p>The <code>contended</code> benchmarks run on 4 threads that force the same values,
+ * some of which are not yet evaluated.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DelayedBench {
+
+	/** A lazy value that evaluates to a constant */
+	static Delayed constant(final int n) {
+		return new Delayed() {
+			public Object eval() { return n; }
+		};
+	}
+
+	/** A lazy value that evaluates through a chain of <code>n</code> intermediate lazy values */
+	static Delayed chain(final int n) {
+		return new Delayed() {
+			public Object eval() { return n == 0 ? (Object) 42 : chain(n-1); }
+		};
+	}
+
+	Delayed evaluated;
+	Object  boxed;
+
+	@Setup
+	public void setup() {
+		evaluated = constant(42);
+		evaluated.call();
+		boxed = 42;
+	}
+
+	/** <code>call</code> on a value that is already evaluated */
+	@Benchmark
+	public Object callEvaluated() {
+		return evaluated.call();
+	}
+
+	/** create and evaluate a lazy value */
+	@Benchmark
+	public Object createAndCall() {
+		return constant(42).call();
+	}
+
+	/** evaluation that steps through 10 intermediate lazy values */
+	@Benchmark
+	public Object callChain10() {
+		return chain(10).call();
+	}
+
+	/** <code>Delayed.forced</code> on a value that is not lazy */
+	@Benchmark
+	public Integer forcedStrict() {
+		return Delayed.<Integer>forced(boxed);
+	}
+
+	/** <code>Delayed.forced</code> on an evaluated lazy value */
+	@Benchmark
+	public Integer forcedLazy() {
+		return Delayed.<Integer>forced(evaluated);
+	}
+
+	/**
+	 * <p>Lazy values shared between threads.</p>
+	 * 
+	 * <p>Every now and then, a slot is refilled with a value that is not yet evaluated.</p>
+	 */
+	@State(Scope.Benchmark)
+	public static class Shared {
+		final static int SIZE = 1024;
+		final AtomicReferenceArray<Delayed> ring = new AtomicReferenceArray<Delayed>(SIZE);
+
+		@Setup
+		public void setup() {
+			for (int i = 0; i < SIZE; i++) ring.set(i, chain(3));
+		}
+	}
+
+	/** 4 threads force shared values, 1 in 16 of the accesses replaces a value by a fresh one */
+	@Benchmark
+	@Threads(4)
+	public Object contendedCall(final Shared shared) {
+		final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		final int i = rnd.nextInt(Shared.SIZE);
+		final Object r = shared.ring.get(i).call();
+		if ((rnd.nextInt() & 15) == 0) shared.ring.set(i, chain(3));
+		return r;
+	}
+
+	/** 4 threads read the same evaluated value */
+	@Benchmark
+	@Threads(4)
+	public Object contendedEvaluated(final Shared shared) {
+		return shared.ring.get(0).call();
+	}
+}
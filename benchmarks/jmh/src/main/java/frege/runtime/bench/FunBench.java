@@ -0,0 +1,112 @@
+package frege.runtime.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frege.runtime.Delayed;
+import frege.runtime.Fun1;
+import frege.runtime.Fun2I;
+import frege.runtime.Fun3;
+import frege.runtime.Lambda;
+
+/**
+ * <p>Cost of function application through the {@link frege.runtime.Applicable} interface.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FunBench {
+
+	final Fun3<Integer> add3 = new Fun3<Integer>() {
+		public Integer eval(final Object c, final Object b, final Object a) {
+			return (Integer) a + (Integer) b + (Integer) c;
+		}
+	};
+
+	final Lambda unknown = add3;
+	final Fun1<Integer> partial = add3.apply(1).apply(2);
+	final Object a = 1, b = 2, c = 3;
+
+	/** <code>f.apply(a).apply(b).apply(c)</code> */
+	@Benchmark
+	public Object applyChain() {
+		return unknown.apply(a).apply(b).apply(c).result().call();
+	}
+
+	/** <code>f.apply3(a,b,c)</code> */
+	@Benchmark
+	public Object apply3() {
+		return unknown.apply3(a, b, c).result().call();
+	}
+
+	/** <code>f.apply(a,b,c)</code> on a known {@link Fun3} */
+	@Benchmark
+	public Object applySaturated() {
+		return add3.apply(a, b, c).call();
+	}
+
+	/** application of a partially applied function to its last argument */
+	@Benchmark
+	public Object applyPartial() {
+		return partial.apply(c).call();
+	}
+
+	/** <code>eval</code>, the direct call */
+	@Benchmark
+	public Object eval() {
+		return add3.eval(c, b, a);
+	}
+
+	final Fun2I plus = new Fun2I() {
+		public int evalInt(final int b, final int a) {
+			return a + b;
+		}
+	};
+
+	final Lambda unknownInt = plus;
+	int x = 1, y = 2;
+
+	/** <code>f x y</code> with <code>f :: Int -&gt; Int -&gt; Int</code>, the generic way */
+	@Benchmark
+	public int applyInt() {
+		return Delayed.forcedInt(unknownInt.apply(x).apply(y).result());
+	}
+
+	/**
+	 * <p><code>f x y</code> with <code>f :: Int -&gt; Int -&gt; Int</code>, 
+	 * as the compiler generates it for evaluated arguments.</p>
+	 * 
+	 * <p>With <code>-prof gc</code>, this should show no allocations at all,
+	 * compared to the boxed arguments and the partial application in {@link #applyInt}.</p>
+	 */
+	@Benchmark
+	public int callInt() {
+		return Fun2I.call(unknownInt, x, y);
+	}
+
+	/** A partial application, shared between threads */
+	@State(Scope.Benchmark)
+	public static class Shared {
+		final Fun1<Integer> partial = new FunBench().add3.apply(1).apply(2);
+	}
+
+	/** 4 threads apply the same partial application */
+	@Benchmark
+	@Threads(4)
+	public Object contendedPartial(final Shared shared) {
+		return shared.partial.apply(c).call();
+	}
+}
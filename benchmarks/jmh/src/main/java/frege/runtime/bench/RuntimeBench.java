@@ -0,0 +1,124 @@
+package frege.runtime.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frege.runtime.Array;
+import frege.runtime.Fun1;
+import frege.runtime.Lambda;
+import frege.runtime.Regex;
+import frege.runtime.Runtime;
+import frege.runtime.Value;
+import frege.runtime.WrappedCheckedException;
+
+/**
+ * <p>Cost of helper methods in the runtime: constructor access, arrays, 
+ * regular expressions and exception handling.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RuntimeBench {
+
+	final Value value = new Value() {
+		public int _constructor() { return 1; }
+	};
+	final Object valueObj = value;
+	final Object intObj   = 7;
+
+	final Array array = new Array(64);
+	int index = 0;
+
+	final Pattern pattern = Pattern.compile("\\d+");
+	Matcher matcher;
+
+	/** an IO action that returns its argument */
+	final Lambda ok = new Fun1<Object>() {
+		public Object eval(final Object world) { return world; }
+	};
+
+	/** an IO action that throws */
+	final Lambda fails = new Fun1<Object>() {
+		public Object eval(final Object world) { throw new IllegalStateException("fails"); }
+	};
+
+	/** the handler */
+	final Lambda handler = new Fun1<Object>() {
+		public Object eval(final Object exc) { return ok; }
+	};
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < array.length(); i++) array.setAt(i, i);
+		matcher = pattern.matcher("abc 123 def 4567 ghi 89");
+	}
+
+	@Benchmark
+	public int constructorValue() {
+		return Runtime.constructor(value);
+	}
+
+	@Benchmark
+	public int constructorObject() {
+		return Runtime.constructor(valueObj) + Runtime.constructor(intObj);
+	}
+
+	@Benchmark
+	public Object arrayGetSet() {
+		final int i = index = (index + 1) & 63;
+		final Object o = array.getAt(i);
+		array.setAt(63 - i, o);
+		return o;
+	}
+
+	@Benchmark
+	public Matcher regexClone() {
+		return Regex.clone(matcher);
+	}
+
+	@Benchmark
+	public Matcher regexFind() {
+		return Regex.find(matcher);
+	}
+
+	/** <code>catch</code> without an exception */
+	@Benchmark
+	public Object catchNormal() {
+		return WrappedCheckedException.doCatch(IllegalStateException.class, ok, handler);
+	}
+
+	/** <code>catch</code> with an exception */
+	@Benchmark
+	public Object catchThrown() {
+		return WrappedCheckedException.doCatch(IllegalStateException.class, fails, handler);
+	}
+
+	/** The same matcher, shared between threads */
+	@State(Scope.Benchmark)
+	public static class SharedMatcher {
+		final Matcher matcher = Pattern.compile("\\d+").matcher("abc 123 def 4567 ghi 89");
+	}
+
+	/** 4 threads run the regex benchmark on the same matcher */
+	@Benchmark
+	@Threads(4)
+	public Matcher contendedRegexFind(final SharedMatcher shared) {
+		return Regex.find(shared.matcher);
+	}
+}
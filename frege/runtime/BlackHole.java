@@ -25,10 +25,100 @@ package frege.runtime;
  *
  */
 public class BlackHole {
-	private BlackHole() {}
+	private BlackHole() { owner = null; }
+	
+	/**
+	 * <p>Make a black hole that marks a {@link Delayed} as being evaluated 
+	 * by the given thread.</p>
+	 * 
+	 * @param owner the thread that evaluates the {@link Delayed}
+	 */
+	BlackHole(Thread owner) { this.owner = owner; }
+	
 	/**
 	 * <p>A uniq object that is useless and cannot be casted
 	 * to any other type, except {@link Object}.</p>
 	 */
 	final public static BlackHole it = new BlackHole();
+	
+	/**
+	 * <p>The thread that claimed the {@link Delayed} value for evaluation.</p>
+	 * 
+	 * <p>When the same thread demands the value again while evaluating it,
+	 * we have a real black hole. Other threads just need to wait.</p>
+	 */
+	final Thread owner;
+	
+	/**
+	 * <p>Stack of threads that wait for the evaluation to finish.</p>
+	 * 
+	 * <p>This is <code>null</code> as long as nobody waits, and {@link BlackHole#it}
+	 * after the owner released them.</p>
+	 */
+	private volatile Object waiters = null;
+	
+	private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<BlackHole, Object> 
+		WAITERS = java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater(
+					BlackHole.class, Object.class, "waiters");
+	
+	/**
+	 * A node in the stack of waiting threads.
+	 */
+	private final static class Waiter {
+		final Thread thread;
+		final Object next;
+		Waiter(Thread thread, Object next) { this.thread = thread; this.next = next; }
+	}
+	
+	/**
+	 * <p>Block the current thread until the owner releases this black hole,
+	 * or until the {@link Delayed} does not hold this black hole anymore.</p>
+	 * 
+	 * <p>When the current thread is a worker of a fork/join pool, the pool may
+	 * start another worker while we wait, see {@link Concurrent#block}.</p>
+	 * 
+	 * @param d the {@link Delayed} that is being evaluated by the owner
+	 * @return <b>false</b> if this black hole was already released, so that
+	 *         there was no need to wait.
+	 */
+	final boolean await(final Delayed d) {
+		final Thread me = Thread.currentThread();
+		for (;;) {
+			final Object w = waiters;
+			if (w == it) return false;
+			if (WAITERS.compareAndSet(this, w, new Waiter(me, w))) break;
+		}
+		final Concurrent.Blocker released = new Concurrent.Blocker() {
+			public boolean isReleasable() {
+				return !d.isBlackHoled(BlackHole.this) || waiters == it;
+			}
+		};
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				Concurrent.block(released);
+				break;
+			}
+			catch (InterruptedException e) {
+				// the value is needed anyway, keep waiting
+				interrupted = true;
+			}
+		}
+		if (interrupted) me.interrupt();
+		return true;
+	}
+	
+	/**
+	 * <p>Wake up all threads that are waiting for the owner.</p>
+	 * 
+	 * <p>Must be called by the owner after the {@link Delayed} has been updated.</p>
+	 */
+	final void release() {
+		Object w = WAITERS.getAndSet(this, it);
+		while (w instanceof Waiter) {
+			final Waiter waiter = (Waiter) w;
+			java.util.concurrent.locks.LockSupport.unpark(waiter.thread);
+			w = waiter.next;
+		}
+	}
 }
@@ -0,0 +1,141 @@
+package frege.runtime;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+
+/**
+ * <p>An immutable, efficiently concatenable piece of text.</p>
+ *
+ * <p>This implements the <code>Builder</code> type of <code>frege.prelude.PreludeText</code>.
+ * A {@link Builder} is a tree of {@link String}s, hence {@link Builder#append} is O(1)
+ * and does not copy anything. The text is put together only once, in a single
+ * {@link StringBuilder} of the right size by {@link Builder#toString},
+ * or not at all by {@link Builder#writeTo}, which writes the pieces one after the other.</p>
+ *
+ * <p>The tree is walked without recursion, so that deeply nested
+ * appends cannot overflow the stack.</p>
+ */
+public final class Builder {
+
+	/** The text of a leaf, or <code>null</code> for an append node. */
+	private final String text;
+	private final Builder left, right;
+	private final long length;
+
+	private Builder(final String text) {
+		this.text = text;
+		this.left = null;
+		this.right = null;
+		this.length = text.length();
+	}
+
+	private Builder(final Builder left, final Builder right) {
+		this.text = null;
+		this.left = left;
+		this.right = right;
+		this.length = left.length + right.length;
+	}
+
+	/** The empty {@link Builder}. */
+	public final static Builder empty = new Builder("");
+
+	/**
+	 * <p>A {@link Builder} for a {@link String}.</p>
+	 */
+	public static Builder fromString(final String s) {
+		return s.length() == 0 ? empty : new Builder(s);
+	}
+
+	/**
+	 * <p>A {@link Builder} for a single character.</p>
+	 */
+	public static Builder fromChar(final char c) {
+		return new Builder(String.valueOf(c));
+	}
+
+	/**
+	 * <p>The decimal representation of an <code>int</code>.</p>
+	 */
+	public static Builder fromInt(final int i) {
+		return new Builder(Integer.toString(i));
+	}
+
+	/**
+	 * <p>The decimal representation of a <code>long</code>.</p>
+	 */
+	public static Builder fromLong(final long l) {
+		return new Builder(Long.toString(l));
+	}
+
+	/**
+	 * <p>Concatenate two {@link Builder}s, in constant time.</p>
+	 */
+	public Builder append(final Builder other) {
+		if (other.length == 0) return this;
+		if (length == 0) return other;
+		return new Builder(this, other);
+	}
+
+	/**
+	 * <p>Concatenate many {@link Builder}s.</p>
+	 */
+	public static Builder concat(final Builder[] xs) {
+		Builder result = empty;
+		for (final Builder x : xs) result = result.append(x);
+		return result;
+	}
+
+	/**
+	 * <p>The number of characters.</p>
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * <p>Append the text to a {@link StringBuilder}.</p>
+	 */
+	public void appendTo(final StringBuilder sb) {
+		final ArrayDeque<Builder> todo = new ArrayDeque<Builder>();
+		Builder b = this;
+		for (;;) {
+			while (b.text == null) {
+				todo.push(b.right);
+				b = b.left;
+			}
+			sb.append(b.text);
+			if (todo.isEmpty()) return;
+			b = todo.pop();
+		}
+	}
+
+	/**
+	 * <p>Write the text to a {@link PrintWriter}, without making a {@link String} of it first.</p>
+	 */
+	public static void writeTo(final PrintWriter out, final Builder builder) {
+		final ArrayDeque<Builder> todo = new ArrayDeque<Builder>();
+		Builder b = builder;
+		for (;;) {
+			while (b.text == null) {
+				todo.push(b.right);
+				b = b.left;
+			}
+			out.write(b.text);
+			if (todo.isEmpty()) return;
+			b = todo.pop();
+		}
+	}
+
+	/**
+	 * <p>The text, made in a single {@link StringBuilder} of the right size.</p>
+	 */
+	@Override
+	public String toString() {
+		if (text != null) return text;
+		if (length > Integer.MAX_VALUE - 8)
+			throw new OutOfMemoryError("Builder.toString: result too large");
+		final StringBuilder sb = new StringBuilder((int) length);
+		appendTo(sb);
+		return sb.toString();
+	}
+}
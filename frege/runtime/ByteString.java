@@ -0,0 +1,251 @@
+package frege.runtime;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <p>An immutable slice of a byte array.</p>
+ *
+ * <p>This implements the <code>ByteString</code> type of <code>frege.data.ByteString</code>.
+ * {@link ByteString#take}, {@link ByteString#drop} and {@link ByteString#slice}
+ * share the array of the original, only operations that produce new content copy.
+ * Bytes are passed to and from Frege as <code>int</code> values from 0 to 255.</p>
+ *
+ * <p>The array must not be changed once it is wrapped. Therefore, it is copied
+ * when a {@link ByteString} is made from an array that is not private to this class.</p>
+ */
+public final class ByteString implements Comparable<ByteString> {
+
+	private final byte[] bytes;
+	private final int offset;
+	private final int length;
+
+	private final static Charset utf8 = Charset.forName("UTF-8");
+
+	private ByteString(final byte[] bytes, final int offset, final int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/** The empty {@link ByteString}. */
+	public final static ByteString empty = new ByteString(new byte[0], 0, 0);
+
+	/** Wrap an array that is not used elsewhere. */
+	private static ByteString wrap(final byte[] bytes, final int length) {
+		return length == 0 ? empty : new ByteString(bytes, 0, length);
+	}
+
+	/**
+	 * <p>Make a {@link ByteString} from the low 8 bits of the elements of an array.</p>
+	 */
+	public static ByteString pack(final int[] xs) {
+		final byte[] bytes = new byte[xs.length];
+		for (int i = 0; i < xs.length; i++) bytes[i] = (byte) xs[i];
+		return wrap(bytes, bytes.length);
+	}
+
+	/**
+	 * <p>A {@link ByteString} of length 1.</p>
+	 */
+	public static ByteString singleton(final int b) {
+		return wrap(new byte[] { (byte) b }, 1);
+	}
+
+	/**
+	 * <p>Encode a {@link String} in UTF-8.</p>
+	 */
+	public static ByteString encodeUtf8(final String s) {
+		final byte[] bytes = s.getBytes(utf8);
+		return wrap(bytes, bytes.length);
+	}
+
+	/**
+	 * <p>Decode the bytes as UTF-8, malformed input is replaced with <code>'�'</code>.</p>
+	 */
+	public String decodeUtf8() {
+		return new String(bytes, offset, length, utf8);
+	}
+
+	/** The bytes as array of values from 0 to 255. */
+	public int[] unpack() {
+		final int[] xs = new int[length];
+		for (int i = 0; i < length; i++) xs[i] = bytes[offset + i] & 0xff;
+		return xs;
+	}
+
+	public int length() { return length; }
+
+	public boolean isEmpty() { return length == 0; }
+
+	/**
+	 * <p>The byte at the given index, as a value from 0 to 255.</p>
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public int index(final int i) {
+		if (i < 0 || i >= length)
+			throw new IndexOutOfBoundsException("ByteString.index: " + i + " not in [0.." + length + ")");
+		return bytes[offset + i] & 0xff;
+	}
+
+	/**
+	 * <p>The first <code>n</code> bytes, without copying.</p>
+	 */
+	public ByteString take(final int n) {
+		if (n >= length) return this;
+		if (n <= 0) return empty;
+		return new ByteString(bytes, offset, n);
+	}
+
+	/**
+	 * <p>All but the first <code>n</code> bytes, without copying.</p>
+	 */
+	public ByteString drop(final int n) {
+		if (n <= 0) return this;
+		if (n >= length) return empty;
+		return new ByteString(bytes, offset + n, length - n);
+	}
+
+	/**
+	 * <p>The bytes from index <code>from</code> up to, but not including, <code>to</code>,
+	 * without copying. The indexes are clamped to the valid range.</p>
+	 */
+	public ByteString slice(final int from, final int to) {
+		return take(to).drop(from);
+	}
+
+	/**
+	 * <p>Concatenate two {@link ByteString}s.</p>
+	 */
+	public ByteString append(final ByteString other) {
+		if (other.length == 0) return this;
+		if (length == 0) return other;
+		final byte[] result = new byte[length + other.length];
+		System.arraycopy(bytes, offset, result, 0, length);
+		System.arraycopy(other.bytes, other.offset, result, length, other.length);
+		return wrap(result, result.length);
+	}
+
+	/**
+	 * <p>Concatenate many {@link ByteString}s, copying each one only once.</p>
+	 */
+	public static ByteString concat(final ByteString[] xs) {
+		long n = 0;
+		for (final ByteString x : xs) n += x.length;
+		if (n > Integer.MAX_VALUE - 8)
+			throw new OutOfMemoryError("ByteString.concat: result too large");
+		final byte[] result = new byte[(int) n];
+		int at = 0;
+		for (final ByteString x : xs) {
+			System.arraycopy(x.bytes, x.offset, result, at, x.length);
+			at += x.length;
+		}
+		return wrap(result, result.length);
+	}
+
+	/**
+	 * <p>A copy that holds on to its bytes only.</p>
+	 *
+	 * <p>Use this to let the array of a large {@link ByteString} be garbage collected,
+	 * when only a small slice of it is still needed.</p>
+	 */
+	public ByteString copy() {
+		return wrap(Arrays.copyOfRange(bytes, offset, offset + length), length);
+	}
+
+	/**
+	 * <p>The index of the first occurrence of a byte at or after <code>from</code>, or -1.</p>
+	 */
+	public int indexOf(final int b, final int from) {
+		final byte x = (byte) b;
+		for (int i = Math.max(from, 0); i < length; i++)
+			if (bytes[offset + i] == x) return i;
+		return -1;
+	}
+
+	/**
+	 * <p>Read at most <code>max</code> bytes.</p>
+	 *
+	 * <p>Blocks until some bytes are available.</p>
+	 *
+	 * @return the bytes read, or <code>null</code> at the end of the stream
+	 */
+	public static ByteString read(final InputStream in, final int max) throws IOException {
+		final byte[] buf = new byte[Math.max(max, 1)];
+		final int n = in.read(buf);
+		if (n < 0) return null;
+		return wrap(n < buf.length / 2 ? Arrays.copyOf(buf, n) : buf, n);
+	}
+
+	/**
+	 * <p>Read a whole file.</p>
+	 */
+	public static ByteString readFile(final String path) throws IOException {
+		final FileInputStream in = new FileInputStream(path);
+		try {
+			final long size = in.getChannel().size();
+			if (size > Integer.MAX_VALUE - 8)
+				throw new IOException("ByteString.readFile: " + path + " is too large");
+			byte[] buf = new byte[(int) size];
+			int n = 0;
+			for (;;) {
+				if (n == buf.length) {
+					// the file may have grown
+					final int c = in.read();
+					if (c < 0) break;
+					buf = Arrays.copyOf(buf, (int) Math.min(Integer.MAX_VALUE - 8, 2L * buf.length + 1));
+					buf[n++] = (byte) c;
+				}
+				final int k = in.read(buf, n, buf.length - n);
+				if (k < 0) break;
+				n += k;
+			}
+			return wrap(buf, n);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * <p>Write the bytes to an {@link OutputStream}.</p>
+	 */
+	public void write(final OutputStream out) throws IOException {
+		out.write(bytes, offset, length);
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ByteString)) return false;
+		final ByteString other = (ByteString) o;
+		if (length != other.length) return false;
+		for (int i = 0; i < length; i++)
+			if (bytes[offset + i] != other.bytes[other.offset + i]) return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		for (int i = 0; i < length; i++) h = 31 * h + bytes[offset + i];
+		return h;
+	}
+
+	/**
+	 * <p>Lexicographic order, bytes are compared as unsigned values.</p>
+	 */
+	public int compareTo(final ByteString other) {
+		final int n = Math.min(length, other.length);
+		for (int i = 0; i < n; i++) {
+			final int a = bytes[offset + i] & 0xff, b = other.bytes[other.offset + i] & 0xff;
+			if (a != b) return a - b;
+		}
+		return length - other.length;
+	}
+}
@@ -0,0 +1,320 @@
+package frege.runtime;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>An unbounded channel.</p>
+ *
+ * <p>This implements the <code>Chan</code> type of <code>frege.control.Concurrent</code>.
+ * The channel is a linked list of nodes, where writers append at the tail and readers
+ * advance their head. Writing never blocks and is lock free: the writer swaps itself
+ * in as new tail, and then links the old tail to the new node.
+ * Reading is a compare-and-set of the head, readers block only when there is nothing
+ * to read. {@link Chan#readMany} takes all available values up to a maximum in one step.</p>
+ *
+ * <p>A reader that blocks puts itself on a stack of waiters in the last node, which
+ * its head is then. The writer that links the next node wakes one waiter per channel
+ * from that stack, and hands the other waiters of the channel over to it.
+ * Once it has read, the woken reader puts them back in the node it stopped at.
+ * Readers of duplicates that have not read up to the end yet are not disturbed.</p>
+ *
+ * <p>A duplicate made with {@link Chan#dup()} shares the tail, but has its own head.
+ * It sees all values written afterwards, independently of the other readers.
+ * Nodes that were read by all duplicates are garbage collected.</p>
+ *
+ * <p>A reader sets the value of a node it has read to <code>null</code>, so that the 
+ * head does not keep the last value read reachable. This stops when the channel
+ * gets a duplicate, because the duplicates read the same nodes.</p>
+ */
+public final class Chan {
+
+	/**
+	 * A node of the list.
+	 */
+	private final static class Node {
+		/** the value, <code>null</code> once read, unless the channel has duplicates */
+		Object item;
+		volatile Node next = null;
+		/** readers that wait for the next node */
+		volatile Waiter waiters = null;
+		Node(final Object item) { this.item = item; }
+	}
+
+	/**
+	 * <p>A blocked reader.</p>
+	 */
+	private final static class Waiter {
+		final Thread thread = Thread.currentThread();
+		final Chan chan;
+		/** the next waiter in the same stack */
+		Waiter next = null;
+		/**
+		 * {@link Chan#WAITING}, {@link Chan#CANCELLED}, {@link Chan#WOKEN}, 
+		 * or the first of the waiters handed over
+		 */
+		volatile Object state = WAITING;
+		Waiter(final Chan chan) { this.chan = chan; }
+
+		/**
+		 * <p>Wake the thread, unless it has stopped waiting.</p>
+		 *
+		 * @param others other waiters of the same channel, handed over to this one
+		 * @return <b>true</b> if the thread was woken
+		 */
+		boolean wake(final Waiter others) {
+			if (!STATE.compareAndSet(this, WAITING, others == null ? WOKEN : others)) return false;
+			LockSupport.unpark(thread);
+			return true;
+		}
+
+		/**
+		 * <p>Stop waiting.</p>
+		 *
+		 * @return <b>false</b> if the thread was woken before
+		 */
+		boolean cancel() {
+			return STATE.compareAndSet(this, WAITING, CANCELLED);
+		}
+
+		/**
+		 * @return the waiters handed over when this was woken
+		 */
+		Waiter handedOver() {
+			final Object s = state;
+			return s instanceof Waiter ? (Waiter) s : null;
+		}
+	}
+
+	private final static Object WAITING = "waiting";
+	private final static Object CANCELLED = "cancelled";
+	private final static Object WOKEN = "woken";
+
+	/**
+	 * <p>The write end of a channel, shared by all duplicates.</p>
+	 */
+	private final static class Sink {
+		volatile Node tail;
+
+		/** set when the first duplicate is made, values read must not be cleared then */
+		volatile boolean shared = false;
+
+		Sink(final Node tail) { this.tail = tail; }
+	}
+
+	private static final AtomicReferenceFieldUpdater<Sink, Node>
+		TAIL = AtomicReferenceFieldUpdater.newUpdater(Sink.class, Node.class, "tail");
+
+	private static final AtomicReferenceFieldUpdater<Chan, Node>
+		HEAD = AtomicReferenceFieldUpdater.newUpdater(Chan.class, Node.class, "head");
+
+	private static final AtomicReferenceFieldUpdater<Node, Waiter>
+		WAITERS = AtomicReferenceFieldUpdater.newUpdater(Node.class, Waiter.class, "waiters");
+
+	private static final AtomicReferenceFieldUpdater<Waiter, Object>
+		STATE = AtomicReferenceFieldUpdater.newUpdater(Waiter.class, Object.class, "state");
+
+	private final Sink sink;
+
+	/**
+	 * The last node read, the next value to read is in its successor.
+	 */
+	private volatile Node head;
+
+	/** Create an empty channel */
+	public Chan() {
+		final Node n = new Node(null);
+		sink = new Sink(n);
+		head = n;
+	}
+
+	private Chan(final Sink sink) {
+		this.sink = sink;
+		head = sink.tail;
+	}
+
+	/**
+	 * <p>Make a channel that gets all values written to this one from now on.</p>
+	 */
+	public Chan dup() {
+		// The new channel reads only nodes written after the current tail.
+		// Readers that still see shared == false take nodes up to this tail at most.
+		sink.shared = true;
+		return new Chan(sink);
+	}
+
+	/**
+	 * <p>Write a value, this never blocks.</p>
+	 */
+	public void write(final Object x) {
+		final Node n = new Node(x);
+		final Node last = TAIL.getAndSet(sink, n);
+		last.next = n;
+		// A reader pushes itself before it looks at next, and we look at the waiters
+		// after we set next, so either we see the reader, or it sees the new node.
+		if (last.waiters != null) wake(WAITERS.getAndSet(last, null));
+	}
+
+	/**
+	 * <p>Wake the first waiter of every channel, and hand the others over to it.</p>
+	 *
+	 * <p>Cancelled waiters are skipped.</p>
+	 */
+	private static void wake(Waiter ws) {
+		while (ws != null) {
+			final Chan c = ws.chan;
+			Waiter mine = null;
+			Waiter rest = null;
+			for (Waiter w = ws, nx; w != null; w = nx) {
+				nx = w.next;
+				if (w.chan == c) { w.next = mine; mine = w; }
+				else { w.next = rest; rest = w; }
+			}
+			while (mine != null) {
+				final Waiter w = mine;
+				mine = mine.next;
+				if (w.wake(mine)) break;
+			}
+			ws = rest;
+		}
+	}
+
+	/**
+	 * <p>Read a value, wait while the channel is empty.</p>
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public Object read() throws InterruptedException {
+		Waiter others = null;
+		for (;;) {
+			final Node h = head;
+			final Node n = h.next;
+			if (n == null) others = await(h, others);
+			else if (HEAD.compareAndSet(this, h, n)) {
+				requeue(n, others);
+				return take(n);
+			}
+		}
+	}
+
+	/**
+	 * <p>Read a value, unless the channel is empty.</p>
+	 *
+	 * @return the value, or <code>null</code> if the channel is empty
+	 */
+	public Object poll() {
+		for (;;) {
+			final Node h = head;
+			final Node n = h.next;
+			if (n == null) return null;
+			if (HEAD.compareAndSet(this, h, n)) return take(n);
+		}
+	}
+
+	/**
+	 * <p>Read all values that are available, but at most <code>max</code> of them.</p>
+	 *
+	 * <p>Waits while the channel is empty, hence at least 1 value is read.
+	 * If <code>max</code> is 0 or negative, this returns an empty array right away.</p>
+	 *
+	 * @return the values in the order they were written
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public Object[] readMany(final int max) throws InterruptedException {
+		if (max <= 0) return new Object[0];
+		Waiter others = null;
+		for (;;) {
+			final Node h = head;
+			Node last = h.next;
+			if (last == null) {
+				others = await(h, others);
+				continue;
+			}
+			int n = 1;
+			for (Node next = last.next; next != null && n < max; next = next.next) {
+				last = next;
+				n++;
+			}
+			if (HEAD.compareAndSet(this, h, last)) {
+				requeue(last, others);
+				final Object[] items = new Object[n];
+				Node x = h;
+				for (int i = 0; i < n; i++) {
+					x = x.next;
+					items[i] = take(x);
+				}
+				return items;
+			}
+		}
+	}
+
+	/**
+	 * <p>Get the value of a node that was just read by this channel.</p>
+	 *
+	 * <p>The value is cleared, unless another channel may still read the node.</p>
+	 */
+	private Object take(final Node n) {
+		final Object x = n.item;
+		if (!sink.shared) n.item = null;
+		return x;
+	}
+
+	/**
+	 * <p>Put a waiter on the stack of a node.</p>
+	 *
+	 * <p>The waiter must be cancelled or woken if this returns <b>true</b>,
+	 * as the writer of the successor may have missed it.</p>
+	 *
+	 * @return <b>true</b> if the node has a successor
+	 */
+	private static boolean push(final Node h, final Waiter w) {
+		Waiter top;
+		do {
+			top = h.waiters;
+			w.next = top;
+		} while (!WAITERS.compareAndSet(h, top, w));
+		return h.next != null;
+	}
+
+	/**
+	 * <p>Let waiters handed over to this reader wait for the successor of a node.</p>
+	 *
+	 * <p>They are woken right away if there is one already.</p>
+	 */
+	private static void requeue(final Node h, Waiter ws) {
+		while (ws != null) {
+			final Waiter w = ws;
+			ws = ws.next;
+			if (w.state == WAITING && push(h, w)) w.wake(null);
+		}
+	}
+
+	/**
+	 * <p>Block until the node has a successor.</p>
+	 *
+	 * @param others waiters that were handed over to this reader, they wait for the same
+	 * @return the waiters handed over when this reader was woken
+	 * @throws InterruptedException if the thread was interrupted while waiting,
+	 *         then the waiters handed over are woken, so that they do not miss a value
+	 */
+	private Waiter await(final Node h, final Waiter others) throws InterruptedException {
+		requeue(h, others);
+		final Waiter w = new Waiter(this);
+		if (push(h, w) && w.cancel()) return null;
+		try {
+			Concurrent.block(new Concurrent.Blocker() {
+				public boolean isReleasable() { return w.state != WAITING; }
+			});
+		}
+		catch (InterruptedException e) {
+			if (!w.cancel()) {
+				for (Waiter x = w.handedOver(), nx; x != null; x = nx) {
+					nx = x.next;
+					x.wake(null);
+				}
+			}
+			throw e;
+		}
+		return w.handedOver();
+	}
+}
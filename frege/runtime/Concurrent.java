@@ -17,7 +17,7 @@ public class Concurrent {
      * 
      * @see Concurrent#fork Concurrent#setFregeForkJoindPool
      */
-   private static java.util.concurrent.ForkJoinPool fjpool = null;
+   private static volatile java.util.concurrent.ForkJoinPool fjpool = null;
 
 	/**
      * <p>Set the {@link java.util.concurrent.ForkJoinPool} that should be used by the
@@ -68,8 +68,8 @@ public class Concurrent {
      * to prevent creation of another executor service by the Frege runtime.
      * 
      * If the {@link Concurrent#executorService} finds no executor service, it will
-     * create a fixed {@link java.util.concurrent.ThreadPoolExecutor} with a maximum
-     * number of threads that equals 2 times the number of CPU cores available.
+     * create one that uses virtual threads or a fixed number of platform threads,
+     * see {@link Concurrent#threads}.
      *      
      * @param svc - an executor service to use
      * @return The executor service the Frege runtime will actually use. 
@@ -89,20 +89,25 @@ public class Concurrent {
      *  This is a helper function for the `par` operator.</p>
      *  
      *  <p>Applies some value to the argument (which must be a {@link Lambda} that ignores
-     *  that argument), to abtain a  {@link Delayed} value.</p>
+     *  that argument), to abtain a  {@link Delayed} value, the <i>spark</i>.</p>
      *  
-     *  <p>It then checks if we run in a {@link java.util.concurrent.ForkJoinPool}.
-     *  If this is so, it {@link java.util.concurrent.ForkJoinTask#fork()}s, causing the 
-     *  delayed value to be evaluated asynchronously.</p>
+     *  <p>Sparks are kept in the work queues of the {@link java.util.concurrent.ForkJoinPool}. 
+     *  If we run in a fork/join pool, the spark is pushed on the queue of the current worker, 
+     *  where idle workers can steal it. Otherwise, it is submitted to the pool 
+     *  of the Frege runtime, which is created on first use.</p>
      *  
-     *  <p>If we're not running in a {@link java.util.concurrent.ForkJoinPool}, 
-     *  it checks if the pool 
-     *  of the Frege runtime is already initialized. 
-     *  If this is not the case, a new {@link java.util.concurrent.ForkJoinPool} 
-     *  will be created.</p>
+     *  <p>Sparks are cheap, but not free. Hence, a spark is dropped, or <i>overflows</i>, 
+     *  when the current worker has more than {@link Concurrent#sparkSurplus} tasks queued 
+     *  that were not stolen by other workers, or when the queues hold 
+     *  {@link Concurrent#sparkLimit} tasks already. The value will then be evaluated when 
+     *  it is needed, just as without <code>par</code>.</p>
      *  
-     *  <p>Finally, the delayed value will be submitted to the fork/join pool 
-     *  for asynchronous execution.</p>
+     *  <p>A value that is already evaluated, or being evaluated, is not sparked at all,
+     *  and counts as fizzled.
+     *  When a spark runs, it <i>fizzles</i> if the value was already evaluated,
+     *  or is being evaluated by another thread, see {@link Delayed#spark()}. 
+     *  Otherwise, the spark is <i>converted</i>, that is, the value is evaluated in parallel.
+     *  The numbers of converted, fizzled and overflowed sparks are counted in {@link Stats}.</p>
      *  
      *  <p>A {@link Delayed} has the property that it prevents itself from being evaluated
      *  more than once. It also blocks threads that attempt parallel execution. 
@@ -120,35 +125,219 @@ public class Concurrent {
      * 
      */
     final public static boolean fork(Lambda val) {
+    	if (Stats.enabled) Stats.forks.inc();
     	Lazy a = val.apply(true).result();
-        if (java.util.concurrent.ForkJoinTask.inForkJoinPool())
-        	java.util.concurrent.ForkJoinTask.adapt(a).fork();
-        else synchronized (Runtime.emptyString) {		// make sure 2 threads can't do that
+    	if (!(a instanceof Delayed)) return true;	// nothing to evaluate
+    	if (((Delayed) a).started()) {				// nothing to do for a spark
+    		if (Stats.enabled) Stats.sparksFizzled.inc();
+    		return true;
+    	}
+    	final Spark spark = new Spark((Delayed) a);
+        if (java.util.concurrent.ForkJoinTask.inForkJoinPool()) {
+        	if (java.util.concurrent.ForkJoinTask.getSurplusQueuedTaskCount() > sparkSurplus
+        			|| java.util.concurrent.ForkJoinTask.getQueuedTaskCount() >= sparkLimit) {
+        		if (Stats.enabled) Stats.sparksOverflowed.inc();
+        	}
+        	else spark.fork();
+        }
+        else {
+        	final java.util.concurrent.ForkJoinPool pool = forkJoinPool();
+        	if (pool.getQueuedSubmissionCount() >= sparkLimit) {
+        		if (Stats.enabled) Stats.sparksOverflowed.inc();
+        	}
+        	else pool.execute(spark);
+        }
+        return true;
+    }
+
+    /**
+     * <p>The maximum number of sparks a worker keeps queued when no other worker
+     * steals them, see {@link Concurrent#fork}.</p>
+     * 
+     * <p>This is taken from the system property <code>frege.sparks.surplus</code>,
+     * the default is 3.</p>
+     */
+    public final static int sparkSurplus = Integer.getInteger("frege.sparks.surplus", 3);
+    
+    /**
+     * <p>The maximum number of sparks queued by a single worker, 
+     * or submitted from outside the fork/join pool, see {@link Concurrent#fork}.</p>
+     * 
+     * <p>This is taken from the system property <code>frege.sparks.limit</code>,
+     * the default is 4096.</p>
+     */
+    public final static int sparkLimit = Integer.getInteger("frege.sparks.limit", 4096);
+    
+    /**
+     * <p>A task that evaluates a lazy value, unless it fizzles.</p>
+     */
+    private final static class Spark extends java.util.concurrent.RecursiveAction {
+    	static final long serialVersionUID = 1L;
+    	private Delayed value;
+    	Spark(final Delayed value) { this.value = value; }
+		@Override
+		protected void compute() {
+			final Delayed v = value;
+			value = null;		// don't keep the value alive through the task
+			if (v.spark()) {
+				if (Stats.enabled) Stats.sparksConverted.inc();
+			}
+			else if (Stats.enabled) Stats.sparksFizzled.inc();
+		}
+    }
+    
+    /**
+     * <p>Give access to the fork/join pool of the Frege runtime.</p>
+     * 
+     * <p>If it is not yet initialized, creates one with a parallelism 
+     * of 2 times the number of CPU cores available.</p>
+     */
+    private static java.util.concurrent.ForkJoinPool forkJoinPool() {
+    	final java.util.concurrent.ForkJoinPool pool = fjpool;
+    	if (pool != null) return pool;
+    	synchronized (Runtime.emptyString) {		// make sure 2 threads can't do that
         	if (fjpool == null) {				        // at the same time
         		fjpool = new java.util.concurrent.ForkJoinPool(
         					2 * java.lang.Runtime.getRuntime().availableProcessors());
         	}
-        	fjpool.submit(a);
-        }
-        return true;
+        	return fjpool;
+    	}
     }
 
+    /**
+     * <p>The parallelism of the fork/join pool of the Frege runtime.</p>
+     * 
+     * <p>This does not depend on the pool the caller runs in, if any. 
+     * Because the pool of the Frege runtime is never replaced once it is set, 
+     * the result is the same for every call. 
+     * The pool is created if it does not exist yet.</p>
+     */
+    final public static int parallelism() {
+    	return forkJoinPool().getParallelism();
+    }
+    
+    /**
+     * <p>A condition a thread waits for, see {@link Concurrent#block}.</p>
+     */
+    static abstract class Blocker implements java.util.concurrent.ForkJoinPool.ManagedBlocker {
+    	/**
+    	 * Tell if the condition holds, so that the thread need not wait.
+    	 */
+    	public abstract boolean isReleasable();
+    	/**
+    	 * <p>Wait until the thread is unparked.</p>
+    	 * 
+    	 * @return <b>true</b> if the condition holds now
+    	 * @throws InterruptedException if the thread was interrupted
+    	 */
+    	public boolean block() throws InterruptedException {
+    		java.util.concurrent.locks.LockSupport.park(this);
+    		if (Thread.interrupted()) throw new InterruptedException();
+    		return isReleasable();
+    	}
+    }
+    
+    /**
+     * <p>Wait until the condition of the {@link Blocker} holds.</p>
+     * 
+     * <p>All places in the runtime where threads wait for other threads go through
+     * this method, for example, when a lazy value is being evaluated by another thread,
+     * or when an {@link MVar} is empty. In a {@link java.util.concurrent.ForkJoinPool}, 
+     * this uses {@link java.util.concurrent.ForkJoinPool#managedBlock}, so that the pool 
+     * can activate another worker to keep up the parallelism while the thread waits.</p>
+     * 
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    static void block(final Blocker b) throws InterruptedException {
+    	if (b.isReleasable()) return;
+    	if (Stats.enabled && java.util.concurrent.ForkJoinTask.inForkJoinPool()) Stats.managedBlocks.inc();
+    	java.util.concurrent.ForkJoinPool.managedBlock(b);
+    }
+    
+    /**
+     * <p>The number of tasks waiting in the fork/join pool of the Frege runtime, see {@link Stats}.</p>
+     */
+    final static long forkJoinQueued() {
+    	final java.util.concurrent.ForkJoinPool pool = fjpool;
+    	return pool == null ? 0 : pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+    }
+    
+    /**
+     * <p>The number of tasks waiting in the executor service of the Frege runtime, see {@link Stats}.</p>
+     * 
+     * <p>This is known only for a {@link java.util.concurrent.ThreadPoolExecutor}, 
+     * for other executor services, the result is 0.</p>
+     */
+    final static long executorQueued() {
+    	final java.util.concurrent.ExecutorService svc = execService;
+    	return svc instanceof java.util.concurrent.ThreadPoolExecutor
+    			? ((java.util.concurrent.ThreadPoolExecutor) svc).getQueue().size()
+    			: 0;
+    }
+    
     /**
      * <p>Give access to the current executor service.</p>
      * 
      * <p>If the Frege executor service {@link Concurrent#execService} is not
-     * yet initialized, creates a fixed thread pool executor.</p>
+     * yet initialized, creates one, see {@link Concurrent#threads}.</p>
      * 
      *  @return the executor service
      */
     final public static java.util.concurrent.ExecutorService executorService() {
     	return (execService == null) ?
-    		setFregeExecutorService(
-    				java.util.concurrent.Executors.newFixedThreadPool(
-    						2 * java.lang.Runtime.getRuntime().availableProcessors()))
+    		setFregeExecutorService(newExecutorService())
     		: execService;
     }
     
+    /**
+     * <p>The kind of threads that run <i>forkIO</i> and <i>async</i> actions,
+     * taken from the system property <code>frege.threads</code>.</p>
+     * 
+     * <p>With <code>virtual</code>, every action runs on a new virtual thread,
+     * provided the JDK supports them. Virtual threads are cheap, 
+     * and when they block, for example on a {@code MVar} or a socket,
+     * they do not block an OS thread. Hence, thousands of concurrent actions
+     * are no problem, like with green threads in Haskell.</p>
+     * 
+     * <p>Otherwise, or when the JDK has no virtual threads, the actions
+     * run in a fixed {@link java.util.concurrent.ThreadPoolExecutor} with a maximum
+     * number of threads that equals 2 times the number of CPU cores available.</p>
+     */
+    public final static String threads = System.getProperty("frege.threads", "platform");
+    
+    /**
+     * <p>Create the default executor service, see {@link Concurrent#threads}.</p>
+     */
+    private static java.util.concurrent.ExecutorService newExecutorService() {
+    	if ("virtual".equals(threads)) {
+    		final java.util.concurrent.ExecutorService svc = virtualThreadExecutor();
+    		if (svc != null) return svc;
+    	}
+    	return java.util.concurrent.Executors.newFixedThreadPool(
+				2 * java.lang.Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * <p>Create an executor service that runs each task on a new virtual thread.</p>
+     * 
+     * <p>This is looked up by reflection, so that the runtime still
+     * works with JDKs that do not have virtual threads.</p>
+     * 
+     * @return the executor service, or <code>null</code> if the JDK has no virtual threads,
+     * or has them only as preview feature that is not enabled.
+     */
+    final public static java.util.concurrent.ExecutorService virtualThreadExecutor() {
+    	try {
+    		return (java.util.concurrent.ExecutorService) 
+    				java.util.concurrent.Executors.class
+    					.getMethod("newVirtualThreadPerTaskExecutor")
+    					.invoke(null);
+    	}
+    	catch (Exception e) {
+    		return null;
+    	}
+    }
+    
     /**
      * <p>Monitor wait on a given object.</p>
      * <p>Because {@link Object#wait} must be run in a synchronized block,
@@ -0,0 +1,271 @@
+package frege.runtime;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Evaluation on threads with a large stack.</p>
+ *
+ * <p>Deep non-tail recursion, like in <code>naiveLength</code> (see {@link Delayed}),
+ * needs a stack depth that is proportional to the size of the data.
+ * To make such programs work without <code>-Xss</code> options,
+ * when the evaluation of a {@link Delayed} value runs out of stack,
+ * {@link Delayed#call} evaluates it again on a new thread with a large stack,
+ * and waits for the result. The evaluation is restarted with the innermost lazy value
+ * that could be retried, that is, it repeats only little work.</p>
+ *
+ * <p>Because the evaluation starts over, any IO action it performed before it ran
+ * out of stack would be performed again. Therefore, a lazy value is evaluated
+ * again only when the evaluating thread performed no IO action since the evaluation began,
+ * see {@link DeepStack#effect()}. Otherwise, the {@link StackOverflowError} is passed on,
+ * and if no pure lazy value is found further up the stack, the program
+ * fails with it.</p>
+ *
+ * <p>With <code>-Dfrege.stack.main=true</code>, the main program runs on a thread with a large stack 
+ * right from the start.</p>
+ *
+ * <p>The stack size in bytes is taken from the system property <code>frege.stack</code>,
+ * where a suffix of <code>k</code>, <code>m</code> or <code>g</code> multiplies with
+ * 1024, 1024² or 1024³. The default is <code>256m</code>, and <code>0</code> turns
+ * this feature off. When a thread with a large stack runs out of stack in turn,
+ * the evaluation is continued on a thread with twice the stack size, up to 4 times
+ * the configured size.</p>
+ *
+ * <p>The number of evaluations that were continued on another thread is available through
+ * {@link DeepStack#retries()}. With <code>-Dfrege.stack.verbose=true</code>, it is
+ * printed to standard error at the end of the main program.</p>
+ */
+public final class DeepStack {
+	private DeepStack() {}
+
+	/**
+	 * The stack size for new threads, 0 if disabled.
+	 */
+	public final static long stackSize = parseSize(System.getProperty("frege.stack"), 256L << 20);
+
+	/**
+	 * Are evaluations continued on threads with a large stack?
+	 * When not, side effects need not be counted.
+	 */
+	public final static boolean enabled = stackSize > 0;
+
+	/**
+	 * The largest stack size that will be tried.
+	 */
+	private final static long maxSize = 4 * stackSize;
+
+	/**
+	 * Run the main program on a thread with a large stack right from the start?
+	 */
+	final static boolean onMain = Boolean.getBoolean("frege.stack.main");
+
+	/**
+	 * Print statistics at the end of the main program?
+	 */
+	final static boolean verbose = Boolean.getBoolean("frege.stack.verbose");
+
+	private final static AtomicLong retries = new AtomicLong(0);
+
+	/**
+	 * A counter that is used by one thread only.
+	 */
+	private final static class Counter {
+		long count = 0;
+	}
+
+	/**
+	 * <p>The number of IO actions performed so far, by each thread.</p>
+	 *
+	 * <p>The counters are confined to their threads, so that IO actions on different
+	 * threads do not compete for a shared counter, and IO actions on other threads
+	 * do not prevent the retry of an evaluation on this one. IO actions of a thread 
+	 * with a large stack are added to the thread that waited for it.</p>
+	 */
+	private final static ThreadLocal<Counter> effects = new ThreadLocal<Counter>() {
+		@Override protected Counter initialValue() { return new Counter(); }
+	};
+
+	/**
+	 * <p>Record that an IO action is performed by the current thread.</p>
+	 *
+	 * <p>The compiler generates a call to this in the code for native functions 
+	 * that return an <code>ST</code> action, guarded by {@link DeepStack#enabled}.
+	 * Native <code>ST s</code> actions count, too, because they may run
+	 * at <code>RealWorld</code>, like writing an <code>IORef</code> or an array.</p>
+	 */
+	public static void effect() { effects.get().count++; }
+
+	/**
+	 * @return the number of IO actions performed so far by the current thread,
+	 * to be passed to {@link DeepStack#retry} later.
+	 */
+	static long effects() { return effects.get().count; }
+
+	/**
+	 * @return the number of evaluations that ran out of stack and
+	 * were continued on a thread with a larger stack.
+	 */
+	public static long retries() { return retries.get(); }
+
+	/**
+	 * Parse a size with an optional suffix <code>k</code>, <code>m</code> or <code>g</code>.
+	 */
+	static long parseSize(final String s, final long dflt) {
+		if (s == null || s.length() == 0) return dflt;
+		final char unit = Character.toLowerCase(s.charAt(s.length()-1));
+		final int shift = unit == 'k' ? 10 : unit == 'm' ? 20 : unit == 'g' ? 30 : 0;
+		try {
+			return Long.parseLong(shift == 0 ? s : s.substring(0, s.length()-1)) << shift;
+		}
+		catch (NumberFormatException e) {
+			return dflt;
+		}
+	}
+
+	/**
+	 * <p>The threads we create, they know their stack size.</p>
+	 * 
+	 * <p>They use the standard input and output streams of the thread that created them,
+	 * see {@link Runtime#stdout}.</p>
+	 */
+	private final static class Deep extends Thread {
+		final long size;
+		/** The thread that waits for this one. */
+		final Thread waiter;
+		Object result;
+		Throwable failure;
+		long io;
+		private final Callable<?> action;
+		private final java.io.PrintWriter out, err;
+		private final java.io.BufferedReader in;
+		Deep(final Callable<?> action, final long size) {
+			super(null, null, "frege-deep-" + (size >> 20) + "m", size);
+			this.action = action;
+			this.size   = size;
+			this.waiter = Thread.currentThread();
+			this.out    = Runtime.stdout.get();
+			this.err    = Runtime.stderr.get();
+			this.in     = Runtime.stdin.get();
+		}
+		@Override
+		public void run() {
+			Runtime.stdout.set(out);
+			Runtime.stderr.set(err);
+			Runtime.stdin.set(in);
+			try {
+				result = action.call();
+			}
+			catch (Throwable t) {
+				failure = t;
+			}
+			finally {
+				io = effects();
+			}
+		}
+	}
+
+	/**
+	 * <p>Tell if a black hole with the given owner was made by the current thread.</p>
+	 *
+	 * <p>This is the case when the current thread is the owner, or when it
+	 * continues an evaluation for the owner, which waits for it, possibly through other threads
+	 * with a large stack. Waiting for the black hole would then never end.</p>
+	 */
+	static boolean selfOwned(final Thread me, final Thread owner) {
+		Thread t = me;
+		for (;;) {
+			if (t == owner) return true;
+			if (!(t instanceof Deep)) return false;
+			t = ((Deep) t).waiter;
+		}
+	}
+
+	/**
+	 * <p>Thrown when the evaluation exhausted the stack even with the largest stack size.</p>
+	 *
+	 * <p>This tells the callers up the stack not to try again.</p>
+	 */
+	private final static class Exhausted extends StackOverflowError {
+		static final long serialVersionUID = 1L;
+		Exhausted(final String msg) { super(msg); }
+	}
+
+	/**
+	 * <p>Tell if the current thread should run a main program on a large stack thread
+	 * right from the start.</p>
+	 */
+	static boolean mainWanted() {
+		return onMain && enabled && !(Thread.currentThread() instanceof Deep);
+	}
+
+	/**
+	 * <p>Run an action on a new thread with the given stack size and wait for its result.</p>
+	 *
+	 * <p>Exceptions thrown by the action are re-thrown, checked exceptions wrapped
+	 * in {@link WrappedCheckedException}.</p>
+	 */
+	@SuppressWarnings("unchecked")
+	static<T> T run(final Callable<T> action, final long size) {
+		final Deep t = new Deep(action, size);
+		t.start();
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				t.join();
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		// the IO actions were performed on our behalf
+		effects.get().count += t.io;
+		final Throwable f = t.failure;
+		if (f == null) return (T) t.result;
+		if (f instanceof StackOverflowError && !(f instanceof Exhausted))
+			throw new Exhausted("stack exhausted with a stack size of " + size + " bytes");
+		if (f instanceof RuntimeException) throw (RuntimeException) f;
+		if (f instanceof Error) throw (Error) f;
+		throw WrappedCheckedException.wrapIfNeeded(f);
+	}
+
+	/**
+	 * <p>Run the main program on a thread with a large stack.</p>
+	 */
+	static<T> T runMain(final Callable<T> action) {
+		return run(action, stackSize);
+	}
+
+	/**
+	 * <p>Continue the evaluation of a lazy value that ran out of stack.</p>
+	 *
+	 * <p>The value is evaluated again from the start. This would repeat any IO action 
+	 * that was performed while it was evaluated, hence it is done only for
+	 * lazy values whose evaluation did not perform IO actions so far.</p>
+	 *
+	 * <p>This must be called only after the current thread has released its
+	 * claim on the value.</p>
+	 *
+	 * @param d    the value to evaluate
+	 * @param soe  the error that occured
+	 * @param io   the result of {@link DeepStack#effects()} before the evaluation began
+	 * @return the value of <code>d</code>
+	 * @throws StackOverflowError if this feature is disabled,
+	 *        if the largest stack size was already tried,
+	 *        or if the current thread performed IO actions since the evaluation began.
+	 */
+	static Object retry(final Delayed d, final StackOverflowError soe, final long io) {
+		if (!enabled || soe instanceof Exhausted || effects() != io) throw soe;
+		final Thread me = Thread.currentThread();
+		final long size = me instanceof Deep ? 2 * ((Deep) me).size : stackSize;
+		if (size > maxSize)
+			throw new Exhausted("stack exhausted with a stack size of " + ((Deep) me).size + " bytes");
+		return run(new Callable<Object>() {
+			public Object call() {
+				retries.incrementAndGet();
+				return d.call(); 
+			}
+		}, size);
+	}
+}
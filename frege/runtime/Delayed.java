@@ -56,6 +56,14 @@ package frege.runtime;
  * In addition, the result is shared through 
  * caching it in a private instance variable. Hence, instances of
  * {@link Delayed} are not immutable and this in turn requires synchronization.</p>
+ 
+ * <p> The synchronization does not use monitors. Once the value is
+ * evaluated, {@link Delayed#call} is just a volatile read. Before evaluation,
+ * a thread claims the {@link Delayed} by atomically replacing the empty item with 
+ * a {@link BlackHole} that records the evaluating thread. 
+ * Other threads that demand the value in the meantime will be parked until 
+ * the owner has stored the result. If the evaluation throws an exception,
+ * the claim is undone, so that the value can be evaluated again later.</p>
 
  * <p> The caching of the evaluated value would not be strictly necessary, as
  * repeated evaluation must always yield the same result. Experience shows,
@@ -182,25 +190,249 @@ public abstract class Delayed implements Lazy, Applicable {
 
 	private volatile Object item = null;
 	
+	private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<Delayed, Object> 
+		ITEM = java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater(
+					Delayed.class, Object.class, "item");
+	
+	/**
+	 * Create a lazy value, and count it, see {@link Stats}.
+	 */
+	public Delayed() {
+		if (Stats.enabled) Stats.created.inc();
+	}
+	
 	/* (non-Javadoc)
 	 * @see frege.runtime.Lazy#call()
 	 */
 	@Override
-	public final synchronized Object call() {
-		if (item != null) 
+	public final Object call() {
+		final Object o = item;
+		if (o != null && !(o instanceof BlackHole) && !(o instanceof Delayed)) {
 			// value already computed
-			return item;
-		// Detect black holes
-		// When the same thread evaluates this while we are not yet done,
-		// it will return the black hole, and this will, in turn,
-		// give a Class Cast Exception later.
-		item = BlackHole.it;
-		Object o = eval();
-		while (o  instanceof Delayed) {
-			o = ((Delayed) o).eval();
+			if (Stats.enabled) Stats.cached.inc();
+			return o;
+		}
+		return claim();
+	}
+	
+	/**
+	 * <p>Claim this value for evaluation, or wait until some other thread
+	 * has evaluated it.</p>
+	 * 
+	 * <p>Detect black holes:
+	 * When the same thread evaluates this while we are not yet done,
+	 * it will return the black hole, and this will, in turn,
+	 * give a Class Cast Exception later. A thread with a large stack that
+	 * continues an evaluation for this thread counts as the same thread,
+	 * see {@link DeepStack#selfOwned}.</p> 
+	 * 
+	 * <p>If the evaluation runs out of stack before it performed any IO action,
+	 * it is continued on a thread with a larger stack, see {@link DeepStack}.</p>
+	 */
+	private Object claim() {
+		final Thread me = Thread.currentThread();
+		for (;;) {
+			final Object o = item;
+			if (o == null) {
+				final BlackHole bh = new BlackHole(me);
+				if (ITEM.compareAndSet(this, null, bh)) {
+					final long io = DeepStack.enabled ? DeepStack.effects() : 0;
+					try {
+						return evaluate(bh);
+					}
+					catch (StackOverflowError soe) {
+						// our claim is released, try again with more stack
+						return DeepStack.retry(this, soe, io);
+					}
+				}
+			}
+			else if (o instanceof BlackHole) {
+				final BlackHole bh = (BlackHole) o;
+				if (Stats.enabled) Stats.blackHoles.inc();
+				if (DeepStack.selfOwned(me, bh.owner)) return bh;
+				// When bh was already released, yet is still our item,
+				// then a black hole was the result of the evaluation.
+				if (!bh.await(this) && item == bh) return bh;
+			}
+			else if (o instanceof Delayed) {
+				// indirection, see step()
+				final Object v = follow((Delayed) o);
+				if (!(v instanceof BlackHole)) ITEM.compareAndSet(this, o, v);
+				return v;
+			}
+			else return o;
+		}
+	}
+	
+	/**
+	 * <p>Follow a chain of indirections and return the value at its end.</p>
+	 * 
+	 * <p>This is a loop, so that long chains of indirections that result from
+	 * tail calls do not consume stack space.</p>
+	 */
+	private static Object follow(Delayed d) {
+		for (;;) {
+			final Object o = d.item;
+			if (o instanceof Delayed) d = (Delayed) o;
+			else if (o == null || o instanceof BlackHole) return d.call();
+			else return o;
+		}
+	}
+	
+	/**
+	 * Evaluate this value after it was claimed by the current thread.
+	 */
+	private Object evaluate(final BlackHole bh) {
+		boolean done = false;
+		try {
+			if (Stats.enabled) Stats.forced.inc();
+			Object o = eval();
+			while (o  instanceof Delayed) {
+				if (Stats.enabled) Stats.steps.inc();
+				// this also updates the intermediate values we pass through
+				o = ((Delayed) o).step(bh);
+			}
+			item = o;
+			done = true;
+			clear();
+			return o;
+		}
+		finally {
+			if (!done) item = null;
+			bh.release();
+		}
+	}
+	
+	/**
+	 * <p>Perform a single evaluation step on an intermediate value 
+	 * on behalf of the owner of the given {@link BlackHole}.</p>
+	 * 
+	 * <p>The intermediate value is claimed while its {@link Delayed#eval} runs,
+	 * so that no other thread evaluates it at the same time. 
+	 * If it is already evaluated, the cached value is taken instead,
+	 * and if it is being evaluated by another thread, we wait for the result.</p>
+	 * 
+	 * <p>The result of the step is recorded in the intermediate value. If it is 
+	 * another {@link Delayed}, it serves as indirection to the next step,
+	 * so that, should the intermediate value be shared, it will never be
+	 * evaluated again. Instead, {@link Delayed#call} follows the chain of indirections 
+	 * to the final result. Note that this does not keep intermediate values alive: 
+	 * every one references only its successor.</p>
+	 * 
+	 * <p>When the intermediate value is black holed by the owner itself, 
+	 * the value depends on itself, and this fails with {@link Undefined} right away, 
+	 * instead of leaving the black hole as result for good.</p>
+	 */
+	private Object step(final BlackHole bh) {
+		for (;;) {
+			final Object o = item;
+			if (o == null) {
+				if (ITEM.compareAndSet(this, null, bh)) {
+					boolean done = false;
+					try {
+						final Object r = eval();
+						item = r;
+						done = true;
+						clear();
+						return r;
+					}
+					finally {
+						if (!done) item = null;
+					}
+				}
+			}
+			else if (o instanceof BlackHole) {
+				if (DeepStack.selfOwned(bh.owner, ((BlackHole) o).owner))
+					throw new Undefined("black hole: lazy value depends on itself");
+				return call();
+			}
+			else return o;
+		}
+	}
+	
+	/**
+	 * <p>Evaluate this value on behalf of a spark, see {@link Concurrent#fork}.</p>
+	 *
+	 * <p>Unlike {@link Delayed#call}, this never waits for another thread. When this value
+	 * is already claimed, or when the evaluation reaches an intermediate value that is 
+	 * evaluated already or being evaluated by another thread, the spark gives up. 
+	 * In the latter case, the intermediate value is left as indirection, 
+	 * so that {@link Delayed#call} will continue from there.</p>
+	 *
+	 * @return <b>true</b> if the spark did any evaluation, <b>false</b> if it fizzled.
+	 */
+	final boolean spark() {
+		if (item != null) return false;
+		final Thread me = Thread.currentThread();
+		final BlackHole bh = new BlackHole(me);
+		if (!ITEM.compareAndSet(this, null, bh)) return false;
+		boolean done = false;
+		try {
+			if (Stats.enabled) Stats.forced.inc();
+			Object o = eval();
+			boolean worked = false;
+			while (o  instanceof Delayed) {
+				final Delayed d = (Delayed) o;
+				if (d.taken(me)) {
+					item = d;
+					done = true;
+					clear();
+					return worked;
+				}
+				if (Stats.enabled) Stats.steps.inc();
+				o = d.step(bh);
+				worked = true;
+			}
+			item = o;
+			done = true;
+			clear();
+			return true;
+		}
+		finally {
+			if (!done) item = null;
+			bh.release();
 		}
-		item = o;
-		return o;
+	}
+	
+	/**
+	 * Tell if this value is evaluated already, or being evaluated by any thread.
+	 */
+	boolean started() {
+		return item != null;
+	}
+	
+	/**
+	 * Tell if this value is evaluated already, or being evaluated by a thread other than the given one.
+	 */
+	boolean taken(final Thread me) {
+		final Object o = item;
+		return o != null && !(o instanceof Delayed)
+				&& !(o instanceof BlackHole && DeepStack.selfOwned(me, ((BlackHole) o).owner));
+	}
+	
+	/**
+	 * <p>Release the environment of this lazy value.</p>
+	 * 
+	 * <p>This is invoked by the thread that evaluated this value, 
+	 * right after the result has been cached. (A {@link DelayedInt}, {@link DelayedLong}
+	 * or {@link DelayedDouble} may get a second invocation when the boxed value is 
+	 * cached, too, so this must not do anything else.) Subclasses that keep
+	 * references to the function and the arguments needed by {@link Delayed#eval}
+	 * in non-final fields should set them to <code>null</code> here, so that 
+	 * the garbage collector can reclaim data that are only reachable 
+	 * through already evaluated values. Because such fields are not published safely
+	 * by the constructor, they must be volatile, or be kept in an object that
+	 * is referenced by a final field, like in {@link Fun1}.</p>
+	 * 
+	 * <p>{@link Delayed#eval} will never be invoked after this.</p>
+	 */
+	protected void clear() {}
+	
+	/**
+	 * Tell if this value is currently claimed with the given {@link BlackHole}
+	 */
+	boolean isBlackHoled(final BlackHole bh) {
+		return item == bh;
 	}
 
 	/**
@@ -257,6 +489,45 @@ public abstract class Delayed implements Lazy, Applicable {
 		return (R) (o instanceof Lazy ? ((Lazy) o).call() : o);
 	}
 	
+	/**
+	 * <p>Evaluate an object that is known to be an <code>int</code> or a lazy <code>int</code>.</p>
+	 * 
+	 * <p>Avoids boxing if the argument is a {@link DelayedInt}.</p>
+	 * 
+	 * @param o the object in question
+	 * @return the evaluated value
+	 */
+	public final static int forcedInt(Object o) {
+		if (o instanceof DelayedInt) return ((DelayedInt) o).callInt();
+		return Delayed.<Integer>forced(o);
+	}
+	
+	/**
+	 * <p>Evaluate an object that is known to be a <code>long</code> or a lazy <code>long</code>.</p>
+	 * 
+	 * <p>Avoids boxing if the argument is a {@link DelayedLong}.</p>
+	 * 
+	 * @param o the object in question
+	 * @return the evaluated value
+	 */
+	public final static long forcedLong(Object o) {
+		if (o instanceof DelayedLong) return ((DelayedLong) o).callLong();
+		return Delayed.<Long>forced(o);
+	}
+	
+	/**
+	 * <p>Evaluate an object that is known to be a <code>double</code> or a lazy <code>double</code>.</p>
+	 * 
+	 * <p>Avoids boxing if the argument is a {@link DelayedDouble}.</p>
+	 * 
+	 * @param o the object in question
+	 * @return the evaluated value
+	 */
+	public final static double forcedDouble(Object o) {
+		if (o instanceof DelayedDouble) return ((DelayedDouble) o).callDouble();
+		return Delayed.<Double>forced(o);
+	}
+	
 	/* (non-Javadoc)
 	 * @see frege.runtime.Lazy#forced()
 	 */
@@ -0,0 +1,127 @@
+package frege.runtime;
+
+/**
+ * <p>Lazy values of type <code>double</code>.</p>
+ *
+ * <p>Like any {@link Delayed}, a {@link DelayedDouble} is evaluated at most once.
+ * But the value is cached unboxed, and it can be obtained
+ * without boxing through {@link DelayedDouble#callDouble},
+ * see also {@link Delayed#forcedDouble}.
+ * The {@link Delayed#call} method is still there for code that does not know
+ * the type of the value. It will box the value on first use.</p>
+ *
+ * <p>Subclasses must implement {@link DelayedDouble#evalDouble}. Unlike
+ * {@link Delayed#eval}, this method must compute the final value.</p>
+ *
+ * <p>The compiler creates instances of this class for lazy expressions of type
+ * <code>Double</code>.</p>
+ */
+public abstract class DelayedDouble extends Delayed {
+
+	/**
+	 * <p>The value, valid only after {@link DelayedDouble#state} has been set
+	 * to {@link BlackHole#it}.</p>
+	 */
+	private double value;
+
+	/**
+	 * <p><code>null</code> as long as the value is not evaluated,
+	 * a {@link BlackHole} while it is being evaluated
+	 * and {@link BlackHole#it} once it is evaluated.</p>
+	 */
+	private volatile BlackHole state = null;
+
+	private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<DelayedDouble, BlackHole>
+		STATE = java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater(
+					DelayedDouble.class, BlackHole.class, "state");
+
+	/**
+	 * Compute the value.
+	 */
+	abstract public double evalDouble();
+
+	/**
+	 * <p>Get the value, evaluate it if needed.</p>
+	 *
+	 * @throws Undefined if evaluation of the value demands the value itself.
+	 */
+	public final double callDouble() {
+		if (state == BlackHole.it) {
+			if (Stats.enabled) Stats.cached.inc();
+			return value;
+		}
+		return claimDouble();
+	}
+
+	/**
+	 * Evaluate the value, or wait until some other thread has evaluated it.
+	 */
+	private double claimDouble() {
+		final Thread me = Thread.currentThread();
+		for (;;) {
+			final BlackHole s = state;
+			if (s == null) {
+				final BlackHole bh = new BlackHole(me);
+				if (STATE.compareAndSet(this, null, bh)) {
+					final long io = DeepStack.enabled ? DeepStack.effects() : 0;
+					try {
+						return evaluateDouble(bh);
+					}
+					catch (StackOverflowError soe) {
+						// our claim is released, try again with more stack
+						return (Double) DeepStack.retry(this, soe, io);
+					}
+				}
+			}
+			else if (s == BlackHole.it) return value;
+			else {
+				if (Stats.enabled) Stats.blackHoles.inc();
+				if (DeepStack.selfOwned(me, s.owner)) throw new Undefined("black hole: lazy double value depends on itself");
+				s.await(this);
+			}
+		}
+	}
+
+	/**
+	 * Evaluate the value after it was claimed by the current thread.
+	 */
+	private double evaluateDouble(final BlackHole bh) {
+		boolean done = false;
+		if (Stats.enabled) Stats.forced.inc();
+		try {
+			value = evalDouble();
+			state = BlackHole.it;
+			done = true;
+			clear();
+			return value;
+		}
+		finally {
+			if (!done) state = null;
+			bh.release();
+		}
+	}
+
+	@Override
+	final boolean started() {
+		return state != null || super.started();
+	}
+
+	@Override
+	final boolean taken(final Thread me) {
+		final BlackHole s = state;
+		return s != null && (s == BlackHole.it || !DeepStack.selfOwned(me, s.owner)) || super.taken(me);
+	}
+
+	@Override
+	final boolean isBlackHoled(final BlackHole bh) {
+		return state == bh || super.isBlackHoled(bh);
+	}
+
+	/**
+	 * Make the value available for code that does not know that it is a <code>double</code>.
+	 */
+	@Override
+	final public Object eval() {
+		return callDouble();
+	}
+}
@@ -57,11 +57,49 @@ public abstract class Fun1<X> extends Lambda {
      * value of the return type of this function.
      */
     final public Delayed apply(final Object arg1) {
-        return new Delayed () {
-            final public Object eval() {
-                return Fun1.this.eval(arg1);
-            }
-        };
+        return new Eval<X>(this, arg1);
+    }
+    
+    /**
+     * <p>The lazy result of the application of a {@link Fun1}.</p>
+     *
+     * <p>The function and the argument are kept in an array that is referenced
+     * by a final field, so that they are safely published to other threads.
+     * They are released once the value is evaluated.</p>
+     */
+    private final static class Eval<X> extends Delayed {
+        private final Object[] env;
+        Eval(final Fun1<X> fun, final Object arg1) {
+            env = new Object[] { fun, arg1 };
+        }
+        @SuppressWarnings("unchecked")
+        final public X eval() {
+            return ((Fun1<X>) env[0]).eval(env[1]);
+        }
+        final protected void clear() {
+            java.util.Arrays.fill(env, null);
+        }
+    }
+    
+    /**
+     * <p>A partial application that still needs 1 argument.</p>
+     *
+     * <p>It holds the function that was originally applied and the 
+     * arguments supplied so far. The last argument is passed
+     * separately, so evaluation needs no further allocation.</p>
+     */
+    final static class Pap<X> extends Fun1<X> {
+        private final Lambda target;
+        private final Object[] args;
+        Pap(final Lambda target, final Object[] args) {
+            this.target = target;
+            this.args = args;
+        }
+        final Lambda papTarget() { return target; }
+        @SuppressWarnings("unchecked")
+        final public X eval(final Object arg1) {
+            return (X) target.evalPap(args, arg1);
+        }
     }
     
     /**
@@ -45,19 +45,19 @@ public abstract class Fun11<X> extends Lambda {
    /**
      * <p>Apply this function to an argument.</p>
      *
-     * <p> This method creates an instance of {@link Fun10} that collects the
-     * remaining arguments and, when evaluated, invokes the {@link Fun11#eval} method of this
-     * class.</p>
+     * <p> This method creates a partial application, that is, an instance of {@link Fun10} that collects the
+     * remaining arguments and, when evaluated, invokes the <tt>eval</tt> method of the
+     * function that was originally applied.</p>
+     *
+     * <p> The partial application holds that function and the arguments
+     * in a flat array, so that applying the remaining arguments one at a time 
+     * does not create a chain of closures. </p>
      *
      * @return an instance of type <tt>Fun10</tt> that waits for the
      * remaining arguments to be supplied and calls back with all arguments.
      */
     final public Fun10<X> apply(final Object arg1) {
-        return new Fun10<X> () {
-            final public X eval(final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2) {
-                return Fun11.this.eval(arg11,arg10,arg9,arg8,arg7,arg6,arg5,arg4,arg3,arg2,arg1);
-            }
-        };
+        return new Fun10.Pap<X>(papTarget(), papExtend(arg1, 11));
     }
     /**
      * <p>Apply this function to all its arguments at once.</p>
@@ -73,9 +73,82 @@ public abstract class Fun11<X> extends Lambda {
      * @return an instance of type {@link Delayed} 
      */
     final public Delayed apply(final Object arg1,final Object arg2,final Object arg3,final Object arg4,final Object arg5,final Object arg6,final Object arg7,final Object arg8,final Object arg9,final Object arg10,final Object arg11) {
-        return new Delayed () {
-            final public X eval() { return Fun11.this.eval(arg11,arg10,arg9,arg8,arg7,arg6,arg5,arg4,arg3,arg2,arg1); }
-        };
+        return new Eval<X>(this,arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11);
+    }
+    /**
+     * <p>Apply this function to 2 arguments at once.</p>
+     *
+     * <p>Like {@link Fun11#apply(Object)}, but the partial application
+     * is created in one step.</p>
+     *
+     * @return an instance of type <tt>Fun9</tt> that waits for the
+     * remaining arguments.
+     */
+    final public Fun9<X> apply2(final Object arg1,final Object arg2) {
+        final Object[] args = papExtend(arg1, 11);
+        final int i = args.length - 11;
+        args[i+1] = arg2;
+        return new Fun9.Pap<X>(papTarget(), args);
+    }
+    /**
+     * <p>Apply this function to 3 arguments at once.</p>
+     *
+     * <p>Like {@link Fun11#apply(Object)}, but the partial application
+     * is created in one step.</p>
+     *
+     * @return an instance of type <tt>Fun8</tt> that waits for the
+     * remaining arguments.
+     */
+    final public Fun8<X> apply3(final Object arg1,final Object arg2,final Object arg3) {
+        final Object[] args = papExtend(arg1, 11);
+        final int i = args.length - 11;
+        args[i+1] = arg2;
+        args[i+2] = arg3;
+        return new Fun8.Pap<X>(papTarget(), args);
+    }
+    /**
+     * <p>Apply this function to 4 arguments at once.</p>
+     *
+     * <p>Like {@link Fun11#apply(Object)}, but the partial application
+     * is created in one step.</p>
+     *
+     * @return an instance of type <tt>Fun7</tt> that waits for the
+     * remaining arguments.
+     */
+    final public Fun7<X> apply4(final Object arg1,final Object arg2,final Object arg3,final Object arg4) {
+        final Object[] args = papExtend(arg1, 11);
+        final int i = args.length - 11;
+        args[i+1] = arg2;
+        args[i+2] = arg3;
+        args[i+3] = arg4;
+        return new Fun7.Pap<X>(papTarget(), args);
+    }
+    /**
+     * <p>Apply this function to any number of arguments.</p>
+     *
+     * <p>If the number of arguments matches the arity, this is the same as
+     * {@link Fun11#apply(Object,Object,Object,Object,Object,Object,Object,Object,Object,Object,Object)}.</p>
+     */
+    final public Applicable applyN(final Object... args) {
+        if (args.length == 11) return apply(args[0],args[1],args[2],args[3],args[4],args[5],args[6],args[7],args[8],args[9],args[10]);
+        return super.applyN(args);
+    }
+    
+    /**
+     * <p>The lazy result of the application of a {@link Fun11} to all its arguments.</p>
+     *
+     * <p>The function and the arguments are kept in an array that is referenced
+     * by a final field, so that they are safely published to other threads.
+     * They are released once the value is evaluated.</p>
+     */
+    private final static class Eval<X> extends Delayed {
+        private final Object[] env;
+        Eval(final Fun11<X> fun,final Object arg1,final Object arg2,final Object arg3,final Object arg4,final Object arg5,final Object arg6,final Object arg7,final Object arg8,final Object arg9,final Object arg10,final Object arg11) {
+            env = new Object[] { fun,arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11 };
+        }
+        @SuppressWarnings("unchecked")
+        final public X eval() { return ((Fun11<X>) env[0]).eval(env[11],env[10],env[9],env[8],env[7],env[6],env[5],env[4],env[3],env[2],env[1]); }
+        final protected void clear() { java.util.Arrays.fill(env, null); }
     }
     
 	/**
@@ -92,6 +165,67 @@ public abstract class Fun11<X> extends Lambda {
 	final public  <B, Y extends B> Fun11<B> toSuper(Fun11<Y> it) {
     	return (Fun11<B>) it;    	
     }
+    
+    /**
+     * <p>Run the function with arguments collected by a partial application.</p>
+     */
+    final Object evalPap(final Object[] args, final Object last) {
+        return eval(last,args[9],args[8],args[7],args[6],args[5],args[4],args[3],args[2],args[1],args[0]);
+    }
+    /**
+     * <p>A partial application that still needs 11 arguments.</p>
+     *
+     * <p>It holds the function that was originally applied and an array that
+     * has room for all of its arguments, of which the first <tt>args.length-11</tt>
+     * are already supplied. The first application of a further argument
+     * stores it in the array, so that a sequence of applications shares the array.
+     * Any further application of the same partial application works on a copy.</p>
+     */
+    final static class Pap<X> extends Fun11<X> {
+        private final Lambda target;
+        private final Object[] args;
+        private volatile int extended = 0;
+        @SuppressWarnings("rawtypes")
+        private static final java.util.concurrent.atomic.AtomicIntegerFieldUpdater<Pap> 
+            EXTENDED = java.util.concurrent.atomic.AtomicIntegerFieldUpdater.newUpdater(Pap.class, "extended");
+        Pap(final Lambda target, final Object[] args) {
+            this.target = target;
+            this.args = args;
+        }
+        final Lambda papTarget() { return target; }
+        final Object[] papExtend(final Object arg, final int arity) {
+            final int n = args.length - 11;
+            if (EXTENDED.compareAndSet(this, 0, 1)) {
+                args[n] = arg;
+                return args;
+            }
+            final Object[] copy = new Object[args.length];
+            System.arraycopy(args, 0, copy, 0, n);
+            copy[n] = arg;
+            return copy;
+        }
+        @SuppressWarnings("unchecked")
+        final public X eval(final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2, final Object arg1) {
+            final int n = args.length - 11;
+            final Object[] all;
+            if (EXTENDED.compareAndSet(this, 0, 1)) all = args;
+            else {
+                all = new Object[args.length];
+                System.arraycopy(args, 0, all, 0, n);
+            }
+            all[n+0] = arg1;
+            all[n+1] = arg2;
+            all[n+2] = arg3;
+            all[n+3] = arg4;
+            all[n+4] = arg5;
+            all[n+5] = arg6;
+            all[n+6] = arg7;
+            all[n+7] = arg8;
+            all[n+8] = arg9;
+            all[n+9] = arg10;
+            return (X) target.evalPap(all, arg11);
+        }
+    }
 
     /**
      * <p> Run the function. </p>
@@ -0,0 +1,85 @@
+/* «•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»
+
+    Copyright © 2011, Ingo Wechsung
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or
+    without modification, are permitted provided that the following
+    conditions are met:
+
+        Redistributions of source code must retain the above copyright
+        notice, this list of conditions and the following disclaimer.
+
+        Redistributions in binary form must reproduce the above
+        copyright notice, this list of conditions and the following
+        disclaimer in the documentation and/or other materials provided
+        with the distribution. Neither the name of the copyright holder
+        nor the names of its contributors may be used to endorse or
+        promote products derived from this software without specific
+        prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE
+    COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+    WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+    PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER
+    OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+    SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+    LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+    USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+    AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+    LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+    IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+    THE POSSIBILITY OF SUCH DAMAGE.
+
+    «•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•» */
+
+package frege.runtime;
+/**
+ * <p> Frege functions of type <tt>Int -&gt; Int</tt>. </p>
+ *
+ * <p> Such functions are strict in all arguments. They can run on unboxed
+ * arguments through {@link Fun1I#evalInt}, which returns an unboxed result.
+ * As a {@link Fun1}, they can also be used wherever an ordinary function
+ * is expected. </p>
+ *
+ * <p> See {@link Fun1} for a general discussion of untyped function values. </p>
+ *
+ */
+public abstract class Fun1I extends Fun1<Integer> {
+    /**
+     * <p> Run the function on unboxed arguments. </p>
+     *
+     * <p> The arguments are passed in reverse order, like in {@link Fun1#eval}.</p>
+     *
+     * <p>This method must be implemented by all subclasses.</p>
+     *
+     * @return the result
+     */
+    abstract public int evalInt(final int arg1);
+
+    /**
+     * <p> Run the function on boxed or lazy arguments. </p>
+     *
+     * <p> The arguments are evaluated and passed to {@link Fun1I#evalInt}.</p>
+     *
+     * @return the boxed result
+     */
+    final public Integer eval(final Object arg1) {
+        return evalInt(Delayed.forcedInt(arg1));
+    }
+
+    /**
+     * <p> Apply a function of type <tt>Int -&gt; Int</tt> to unboxed arguments. </p>
+     *
+     * <p> If the function is a {@link Fun1I}, this avoids any boxing and
+     * closure creation. Otherwise, the function is applied the usual way
+     * and the result is evaluated.</p>
+     *
+     * @return the unboxed result
+     */
+    final public static int call(final Lambda f, final int arg1) {
+        if (f instanceof Fun1I) return ((Fun1I) f).evalInt(arg1);
+        return Delayed.forcedInt(f.apply(arg1).result());
+    }
+}
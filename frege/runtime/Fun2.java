@@ -45,19 +45,19 @@ public abstract class Fun2<X> extends Lambda {
    /**
      * <p>Apply this function to an argument.</p>
      *
-     * <p> This method creates an instance of {@link Fun1} that collects the
-     * remaining arguments and, when evaluated, invokes the {@link Fun2#eval} method of this
-     * class.</p>
+     * <p> This method creates a partial application, that is, an instance of {@link Fun1} that collects the
+     * remaining arguments and, when evaluated, invokes the <tt>eval</tt> method of the
+     * function that was originally applied.</p>
+     *
+     * <p> The partial application holds that function and the arguments
+     * in a flat array, so that applying the remaining arguments one at a time 
+     * does not create a chain of closures. </p>
      *
      * @return an instance of type <tt>Fun1</tt> that waits for the
      * remaining arguments to be supplied and calls back with all arguments.
      */
     final public Fun1<X> apply(final Object arg1) {
-        return new Fun1<X> () {
-            final public X eval(final Object arg2) {
-                return Fun2.this.eval(arg2,arg1);
-            }
-        };
+        return new Fun1.Pap<X>(papTarget(), papExtend(arg1, 2));
     }
     /**
      * <p>Apply this function to all its arguments at once.</p>
@@ -73,9 +73,42 @@ public abstract class Fun2<X> extends Lambda {
      * @return an instance of type {@link Delayed} 
      */
     final public Delayed apply(final Object arg1,final Object arg2) {
-        return new Delayed () {
-            final public X eval() { return Fun2.this.eval(arg2,arg1); }
-        };
+        return new Eval<X>(this,arg1,arg2);
+    }
+    /**
+     * <p>Apply this function to all its arguments at once.</p>
+     *
+     * @return the same as {@link Fun2#apply(Object,Object)}
+     */
+    final public Delayed apply2(final Object arg1,final Object arg2) {
+        return apply(arg1,arg2);
+    }
+    /**
+     * <p>Apply this function to any number of arguments.</p>
+     *
+     * <p>If the number of arguments matches the arity, this is the same as
+     * {@link Fun2#apply(Object,Object)}.</p>
+     */
+    final public Applicable applyN(final Object... args) {
+        if (args.length == 2) return apply(args[0],args[1]);
+        return super.applyN(args);
+    }
+    
+    /**
+     * <p>The lazy result of the application of a {@link Fun2} to all its arguments.</p>
+     *
+     * <p>The function and the arguments are kept in an array that is referenced
+     * by a final field, so that they are safely published to other threads.
+     * They are released once the value is evaluated.</p>
+     */
+    private final static class Eval<X> extends Delayed {
+        private final Object[] env;
+        Eval(final Fun2<X> fun,final Object arg1,final Object arg2) {
+            env = new Object[] { fun,arg1,arg2 };
+        }
+        @SuppressWarnings("unchecked")
+        final public X eval() { return ((Fun2<X>) env[0]).eval(env[2],env[1]); }
+        final protected void clear() { java.util.Arrays.fill(env, null); }
     }
     
 	/**
@@ -92,7 +125,59 @@ public abstract class Fun2<X> extends Lambda {
 	final public  <B, Y extends B> Fun2<B> toSuper(Fun2<Y> it) {
     	return (Fun2<B>) it;    	
     }
-	
+    
+    /**
+     * <p>Run the function with arguments collected by a partial application.</p>
+     */
+    final Object evalPap(final Object[] args, final Object last) {
+        return eval(last,args[0]);
+    }
+    /**
+     * <p>A partial application that still needs 2 arguments.</p>
+     *
+     * <p>It holds the function that was originally applied and an array that
+     * has room for all of its arguments, of which the first <tt>args.length-2</tt>
+     * are already supplied. The first application of a further argument
+     * stores it in the array, so that a sequence of applications shares the array.
+     * Any further application of the same partial application works on a copy.</p>
+     */
+    final static class Pap<X> extends Fun2<X> {
+        private final Lambda target;
+        private final Object[] args;
+        private volatile int extended = 0;
+        @SuppressWarnings("rawtypes")
+        private static final java.util.concurrent.atomic.AtomicIntegerFieldUpdater<Pap> 
+            EXTENDED = java.util.concurrent.atomic.AtomicIntegerFieldUpdater.newUpdater(Pap.class, "extended");
+        Pap(final Lambda target, final Object[] args) {
+            this.target = target;
+            this.args = args;
+        }
+        final Lambda papTarget() { return target; }
+        final Object[] papExtend(final Object arg, final int arity) {
+            final int n = args.length - 2;
+            if (EXTENDED.compareAndSet(this, 0, 1)) {
+                args[n] = arg;
+                return args;
+            }
+            final Object[] copy = new Object[args.length];
+            System.arraycopy(args, 0, copy, 0, n);
+            copy[n] = arg;
+            return copy;
+        }
+        @SuppressWarnings("unchecked")
+        final public X eval(final Object arg2, final Object arg1) {
+            final int n = args.length - 2;
+            final Object[] all;
+            if (EXTENDED.compareAndSet(this, 0, 1)) all = args;
+            else {
+                all = new Object[args.length];
+                System.arraycopy(args, 0, all, 0, n);
+            }
+            all[n+0] = arg1;
+            return (X) target.evalPap(all, arg2);
+        }
+    }
+
     /**
      * <p> Run the function. </p>
      *
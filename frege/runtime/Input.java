@@ -0,0 +1,129 @@
+package frege.runtime;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+
+/**
+ * <p>Bulk input.</p>
+ *
+ * <p>Reading input one line or one character at a time costs a method call
+ * and, in Frege, a list cell per item. The functions here read large
+ * chunks instead, see <code>Reader.readAll</code>, <code>Reader.getChunks</code>,
+ * <code>BufferedReader.readLines</code> and <code>File.readText</code>
+ * in <code>frege.java.IO</code>.</p>
+ */
+public final class Input {
+	private Input() {}
+
+	/**
+	 * The size of the buffers, in characters or bytes.
+	 */
+	public final static int chunkSize = 65536;
+
+	/**
+	 * <p>Read all remaining characters of a {@link Reader}.</p>
+	 *
+	 * <p>The reader is not closed.</p>
+	 */
+	public static String readAll(final Reader r) throws IOException {
+		final StringBuilder sb = new StringBuilder(chunkSize);
+		final char[] buf = new char[chunkSize];
+		for (int n; (n = r.read(buf)) >= 0;) sb.append(buf, 0, n);
+		return sb.toString();
+	}
+
+	/**
+	 * <p>Read the characters that are available, but at most <code>max</code> of them.</p>
+	 *
+	 * <p>Blocks until at least one character is available. A surrogate pair
+	 * is never split, hence the result may have <code>max+1</code> characters.
+	 * If <code>max</code> is 0 or negative, this returns an empty string right away,
+	 * without reading.</p>
+	 *
+	 * @return the characters read, or <code>null</code> at the end of the input.
+	 */
+	public static String readChunk(final Reader r, final int max) throws IOException {
+		if (max <= 0) return "";
+		final char[] buf = new char[max + 1];
+		final int n = r.read(buf, 0, buf.length - 1);
+		if (n < 0) return null;
+		if (n > 0 && Character.isHighSurrogate(buf[n-1])) {
+			final int c = r.read();
+			if (c >= 0) {
+				buf[n] = (char) c;
+				return new String(buf, 0, n+1);
+			}
+		}
+		return new String(buf, 0, n);
+	}
+
+	/**
+	 * <p>Read the next <code>max</code> lines.</p>
+	 *
+	 * @return the lines without line terminators, less than <code>max</code> only
+	 * at the end of the input.
+	 */
+	public static String[] readLines(final BufferedReader r, final int max) throws IOException {
+		final ArrayList<String> lines = new ArrayList<String>(Math.max(0, Math.min(max, chunkSize)));
+		for (String s; lines.size() < max && (s = r.readLine()) != null;) lines.add(s);
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	/**
+	 * <p>Read a whole UTF-8 encoded file.</p>
+	 *
+	 * <p>The bytes are read through a {@link FileChannel} and decoded
+	 * into a character buffer, which saves the copying done by a
+	 * {@link java.io.InputStreamReader}.
+	 * Malformed input is replaced with <code>'�'</code>.</p>
+	 */
+	public static String readFile(final String path) throws IOException {
+		final FileInputStream in = new FileInputStream(path);
+		try {
+			final FileChannel channel = in.getChannel();
+			final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			final ByteBuffer bytes = ByteBuffer.allocate(chunkSize);
+			final CharBuffer chars = CharBuffer.allocate(chunkSize);
+			// a UTF-8 file has at most as many characters as bytes
+			final StringBuilder sb = new StringBuilder((int) Math.min(channel.size(), Integer.MAX_VALUE - 8));
+			boolean eof = false;
+			while (!eof) {
+				eof = channel.read(bytes) < 0;
+				bytes.flip();
+				for (;;) {
+					final CoderResult r = decoder.decode(bytes, chars, eof);
+					drain(chars, sb);
+					if (r.isUnderflow()) break;
+					if (r.isError()) r.throwException();
+				}
+				bytes.compact();
+			}
+			while (decoder.flush(chars).isOverflow()) drain(chars, sb);
+			drain(chars, sb);
+			return sb.toString();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * <p>Append the decoded characters to the result, and clear the buffer.</p>
+	 */
+	private static void drain(final CharBuffer chars, final StringBuilder sb) {
+		sb.append(chars.array(), 0, chars.position());
+		chars.clear();
+	}
+}
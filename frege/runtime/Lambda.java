@@ -67,4 +67,84 @@ public abstract class Lambda implements Lazy, Applicable, Value {
 	public <R> R forced() {
 		return (R) this;
 	}
+	
+	/**
+	 * <p>Apply this function to 2 arguments.</p>
+	 * 
+	 * <p>The result is the same as that of <code>apply(arg1).apply(arg2)</code>,
+	 * but the function classes {@link Fun2} and higher avoid the intermediate 
+	 * partial application.</p>
+	 */
+	public Applicable apply2(final Object arg1, final Object arg2) {
+		return apply(arg1).apply(arg2);
+	}
+	
+	/**
+	 * <p>Apply this function to 3 arguments.</p>
+	 * 
+	 * @see Lambda#apply2
+	 */
+	public Applicable apply3(final Object arg1, final Object arg2, final Object arg3) {
+		return apply2(arg1, arg2).apply(arg3);
+	}
+	
+	/**
+	 * <p>Apply this function to 4 arguments.</p>
+	 * 
+	 * @see Lambda#apply2
+	 */
+	public Applicable apply4(final Object arg1, final Object arg2, final Object arg3, final Object arg4) {
+		return apply3(arg1, arg2, arg3).apply(arg4);
+	}
+	
+	/**
+	 * <p>Apply this function to any number of arguments.</p>
+	 * 
+	 * <p>A function whose arity equals the number of arguments creates
+	 * the lazy result directly.</p>
+	 * 
+	 * @see Lambda#apply2
+	 */
+	public Applicable applyN(final Object... args) {
+		switch (args.length) {
+			case 0:  return this;
+			case 1:  return apply(args[0]);
+			case 2:  return apply2(args[0], args[1]);
+			case 3:  return apply3(args[0], args[1], args[2]);
+			default:
+				Applicable r = apply4(args[0], args[1], args[2], args[3]);
+				for (int i = 4; i < args.length; i++) r = r.apply(args[i]);
+				return r;
+		}
+	}
+	
+	/**
+	 * <p>The function that is partially applied.</p>
+	 * 
+	 * <p>This is the function itself, unless it is a partial application.</p> 
+	 */
+	Lambda papTarget() { return this; }
+	
+	/**
+	 * <p>Make room for the arguments of a partial application and store the next one.</p>
+	 * 
+	 * <p>A partial application returns its arguments followed by <code>arg</code>, 
+	 * any other function returns a new array of size <code>arity</code> that
+	 * holds <code>arg</code> in its first element.</p>
+	 */
+	Object[] papExtend(final Object arg, final int arity) {
+		final Object[] args = new Object[arity];
+		args[0] = arg;
+		return args;
+	}
+	
+	/**
+	 * <p>Run this function with the arguments collected by a partial application.</p>
+	 * 
+	 * <p>This is implemented in the function classes {@link Fun2} and higher, 
+	 * the only ones that are partially applied.</p>
+	 */
+	Object evalPap(final Object[] args, final Object last) {
+		throw new Undefined("not a partially applicable function: " + getClass().getName());
+	}
 }
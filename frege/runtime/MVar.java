@@ -0,0 +1,284 @@
+package frege.runtime;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A synchronized variable that is either full or empty.</p>
+ *
+ * <p>This implements the <code>MVar</code> type of <code>frege.control.Concurrent</code>.
+ * {@link MVar#take} empties a full variable, and blocks while it is empty.
+ * {@link MVar#put} fills an empty variable, and blocks while it is full.
+ * {@link MVar#read} gets the value without emptying the variable.</p>
+ *
+ * <p>When nobody waits, an operation is just a compare-and-set of the slot.
+ * Threads that have to wait are queued in FIFO order, one queue for threads that
+ * want the value and one for threads that want to put a value. A waiting thread
+ * is served directly by the thread that changes the slot, that is, the value
+ * is handed over, and only the thread that gets it will be woken up.
+ * Operations that find waiting threads queue up behind them, so that
+ * no thread can overtake threads that wait already.</p>
+ *
+ * <p>The value must not be <code>null</code>, this stands for the empty slot.</p>
+ */
+public final class MVar {
+
+	/**
+	 * The value, or <code>null</code> when empty.
+	 */
+	private volatile Object value;
+
+	private static final AtomicReferenceFieldUpdater<MVar, Object>
+		VALUE = AtomicReferenceFieldUpdater.newUpdater(MVar.class, Object.class, "value");
+
+	/**
+	 * <p>The number of waiting threads.</p>
+	 *
+	 * <p>This is only changed while holding the lock of this {@link MVar},
+	 * but read without it, to find out if we can take the fast path.</p>
+	 */
+	private volatile int waiting = 0;
+
+	/**
+	 * <p>Queues of waiting threads, guarded by the lock of this {@link MVar}.</p>
+	 */
+	private Waiter takers, lastTaker, putters, lastPutter;
+
+	private final static int TAKE = 0, READ = 1, PUT = 2;
+
+	/**
+	 * A thread that waits to take, read or put a value.
+	 */
+	private final static class Waiter extends Concurrent.Blocker {
+		final Thread thread = Thread.currentThread();
+		final int kind;
+		/** the value to put, or the value taken or read */
+		Object item;
+		Waiter next;
+		volatile boolean done = false;
+		Waiter(final int kind, final Object item) {
+			this.kind = kind;
+			this.item = item;
+		}
+		public boolean isReleasable() { return done; }
+	}
+
+	/** Create an empty {@link MVar} */
+	public MVar() {
+		value = null;
+	}
+
+	/** Create a full {@link MVar} */
+	public MVar(final Object value) {
+		this.value = value;
+	}
+
+	/**
+	 * <p>Take the value, wait while the variable is empty.</p>
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public Object take() throws InterruptedException {
+		if (waiting == 0) {
+			final Object v = value;
+			if (v != null && VALUE.compareAndSet(this, v, null)) {
+				if (waiting != 0) signal();
+				return v;
+			}
+		}
+		return await(TAKE, null);
+	}
+
+	/**
+	 * <p>Put a value, wait while the variable is full.</p>
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public void put(final Object x) throws InterruptedException {
+		if (waiting == 0 && VALUE.compareAndSet(this, null, x)) {
+			if (waiting != 0) signal();
+			return;
+		}
+		await(PUT, x);
+	}
+
+	/**
+	 * <p>Get the value without taking it, wait while the variable is empty.</p>
+	 *
+	 * <p>This is atomic: when a value is put, all waiting readers
+	 * that are queued before the first taker get that value.</p>
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public Object read() throws InterruptedException {
+		final Object v = value;
+		if (v != null) return v;
+		return await(READ, null);
+	}
+
+	/**
+	 * <p>Replace the value and return the old one, wait while the variable is empty.</p>
+	 *
+	 * <p>When the variable is full, this is atomic. Otherwise, it is a
+	 * {@link MVar#take} followed by a {@link MVar#put}.</p>
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public Object swap(final Object x) throws InterruptedException {
+		for (;;) {
+			final Object v = value;
+			if (v == null || waiting != 0) break;
+			if (VALUE.compareAndSet(this, v, x)) return v;
+		}
+		final Object v = await(TAKE, null);
+		put(x);
+		return v;
+	}
+
+	/**
+	 * <p>Put a value, unless the variable is full.</p>
+	 *
+	 * @return <b>true</b> if the value was put
+	 */
+	public boolean offer(final Object x) {
+		if (VALUE.compareAndSet(this, null, x)) {
+			if (waiting != 0) signal();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * <p>Take the value, unless the variable is empty.</p>
+	 *
+	 * @return the value, or <code>null</code> if the variable was empty
+	 */
+	public Object poll() {
+		for (;;) {
+			final Object v = value;
+			if (v == null) return null;
+			if (VALUE.compareAndSet(this, v, null)) {
+				if (waiting != 0) signal();
+				return v;
+			}
+		}
+	}
+
+	/**
+	 * <p>Tell if the variable is empty.</p>
+	 *
+	 * <p>The answer may be outdated as soon as it is given.</p>
+	 */
+	public boolean isEmpty() {
+		return value == null;
+	}
+
+	/**
+	 * <p>Serve the waiting threads after the slot was changed.</p>
+	 */
+	private void signal() {
+		synchronized (this) {
+			serve();
+		}
+	}
+
+	/**
+	 * <p>Serve waiting threads as long as the first one in the queue
+	 * that corresponds to the state of the slot can go on.</p>
+	 *
+	 * <p>Must be called while holding the lock.</p>
+	 */
+	private void serve() {
+		for (;;) {
+			final Object v = value;
+			if (v != null) {
+				final Waiter w = takers;
+				if (w == null) return;
+				if (w.kind == READ || VALUE.compareAndSet(this, v, null)) {
+					takers = w.next;
+					if (takers == null) lastTaker = null;
+					w.item = v;
+					wake(w);
+				}
+			}
+			else {
+				final Waiter w = putters;
+				if (w == null) return;
+				if (VALUE.compareAndSet(this, null, w.item)) {
+					putters = w.next;
+					if (putters == null) lastPutter = null;
+					w.item = null;
+					wake(w);
+				}
+			}
+		}
+	}
+
+	/** Let a waiter go, must be called while holding the lock, after it was removed from the queue. */
+	private void wake(final Waiter w) {
+		w.next = null;
+		waiting--;
+		w.done = true;
+		LockSupport.unpark(w.thread);
+	}
+
+	/**
+	 * <p>Queue the current thread and wait until it was served.</p>
+	 */
+	private Object await(final int kind, final Object x) throws InterruptedException {
+		final Waiter w = new Waiter(kind, x);
+		synchronized (this) {
+			if (kind == PUT) {
+				if (lastPutter == null) putters = w; else lastPutter.next = w;
+				lastPutter = w;
+			}
+			else {
+				if (lastTaker == null) takers = w; else lastTaker.next = w;
+				lastTaker = w;
+			}
+			waiting++;
+			serve();
+		}
+		if (w.done) return w.item;
+		final long start = Stats.enabled ? System.nanoTime() : 0;
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				Concurrent.block(w);
+				break;
+			}
+			catch (InterruptedException e) {
+				synchronized (this) {
+					if (!w.done) {
+						remove(w);
+						throw e;
+					}
+				}
+				// we got served anyway
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		if (Stats.enabled) Stats.mvarBlocked(System.nanoTime() - start);
+		return w.item;
+	}
+
+	/**
+	 * <p>Remove a waiter that gave up, must be called while holding the lock.</p>
+	 */
+	private void remove(final Waiter w) {
+		final boolean put = w.kind == PUT;
+		Waiter prev = null;
+		for (Waiter q = put ? putters : takers; q != null; prev = q, q = q.next) {
+			if (q != w) continue;
+			if (prev == null) {
+				if (put) putters = w.next; else takers = w.next;
+			}
+			else prev.next = w.next;
+			if (put && lastPutter == w) lastPutter = prev;
+			if (!put && lastTaker == w) lastTaker = prev;
+			waiting--;
+			return;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package frege.runtime;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * <p>A read-only, memory mapped file.</p>
+ *
+ * <p>This implements the <code>MappedFile</code> type of <code>frege.java.IO</code>.
+ * The file is mapped with {@link FileChannel#map}, hence reading it does not copy
+ * anything, and the operating system pages the contents in as needed.</p>
+ *
+ * <p>A mapped buffer cannot be larger than 2 GB. Larger files are mapped in regions of
+ * 1 GB. Each region overlaps the next one by {@link MappedFile#chunkSize} bytes,
+ * so that a chunk of text that starts in a region can always be decoded from that region.</p>
+ *
+ * <p>The Frege type is pure, because the file is not supposed to change while it is mapped.
+ * If it does, the results are undefined.</p>
+ */
+public final class MappedFile {
+
+	private final static int shift = 30;
+	private final static long region = 1L << shift;
+
+	/**
+	 * The maximum number of bytes decoded in one {@link MappedFile#text} chunk.
+	 */
+	public final static int chunkSize = 65536;
+
+	private final static Charset utf8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer[] regions;
+	private final long size;
+
+	private MappedFile(final ByteBuffer[] regions, final long size) {
+		this.regions = regions;
+		this.size = size;
+	}
+
+	/**
+	 * The mapping of an empty file.
+	 */
+	public final static MappedFile empty = new MappedFile(new ByteBuffer[0], 0);
+
+	/**
+	 * <p>Map a file.</p>
+	 *
+	 * <p>The file is closed right away, the mapping stays valid until it is garbage collected.</p>
+	 */
+	public static MappedFile open(final String path) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			final long size = channel.size();
+			final ByteBuffer[] regions = new ByteBuffer[(int) ((size + region - 1) >>> shift)];
+			for (int i = 0; i < regions.length; i++) {
+				final long start = (long) i << shift;
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, Math.min(size - start, region + chunkSize));
+			}
+			return new MappedFile(regions, size);
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * The size of the file in bytes.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * <p>The byte at the given position, as a value from 0 to 255.</p>
+	 */
+	public int byteAt(final long pos) {
+		return regions[(int) (pos >>> shift)].get((int) (pos & (region - 1))) & 0xff;
+	}
+
+	/**
+	 * <p>Where the chunk of text that starts at the given position ends.</p>
+	 *
+	 * <p>This is at most {@link MappedFile#chunkSize} bytes later,
+	 * but never in the middle of a UTF-8 encoded character.</p>
+	 */
+	public long chunkEnd(final long pos) {
+		final long max = Math.min(size, pos + chunkSize);
+		long end = max;
+		while (end < size && end > pos && (byteAt(end) & 0xc0) == 0x80) end--;
+		return end > pos ? end : max;
+	}
+
+	/**
+	 * <p>Decode the UTF-8 encoded text between two positions.</p>
+	 *
+	 * <p>The positions must not be farther apart than {@link MappedFile#chunkSize}.
+	 * Malformed input is replaced with <code>'�'</code>.</p>
+	 */
+	public String text(final long from, final long to) {
+		if (from >= to) return "";
+		final ByteBuffer buffer = regions[(int) (from >>> shift)].duplicate();
+		final int off = (int) (from & (region - 1));
+		buffer.position(off);
+		buffer.limit(off + (int) (to - from));
+		return utf8.decode(buffer).toString();
+	}
+}
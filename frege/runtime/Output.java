@@ -0,0 +1,248 @@
+package frege.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>Buffered UTF-8 output, shared by all threads.</p>
+ *
+ * <p>The standard output and standard error writers of the Frege runtime,
+ * see {@link Runtime#stdout}, write to the {@link PrintWriter}s
+ * {@link Output#stdout} and {@link Output#stderr}. Characters are collected in
+ * a buffer, and encoded to UTF-8 directly into a byte buffer when the buffer is
+ * written out. All threads share the buffer, and writes by different
+ * threads are synchronized.</p>
+ *
+ * <p>When the buffer is written out depends on the flush policy:</p>
+ * <dl>
+ * <dt><code>line</code></dt><dd>at the end of every line, and when the program flushes</dd>
+ * <dt><code>block</code></dt><dd>when the buffer is full, and when the program flushes</dd>
+ * <dt><code>exit</code></dt><dd>only when the buffer is full, the program cannot flush</dd>
+ * </dl>
+ * <p>In any case, all output is written when the main program ends (see {@link Runtime#runMain})
+ * and when the JVM exits.</p>
+ *
+ * <p>The policy is taken from the system properties <code>frege.stdout.flush</code> and
+ * <code>frege.stderr.flush</code>. The default is <code>line</code> for both.
+ * Programs that write much output to a file or pipe run faster with <code>block</code>.
+ * The size of the buffers is taken from <code>frege.output.buffer</code>, the default
+ * is 64k characters.</p>
+ */
+public final class Output extends Writer {
+
+	/**
+	 * When to write the buffer.
+	 */
+	public enum Flush { LINE, BLOCK, EXIT };
+
+	private final OutputStream out;
+	private final Flush policy;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars;
+	private final ByteBuffer bytes;
+	private long scanned = 0;
+
+	/**
+	 * Create a buffered writer with the given flush policy and buffer size.
+	 */
+	public Output(final OutputStream out, final Flush policy, final int size) {
+		this.out = out;
+		this.policy = policy;
+		this.encoder = Charset.forName("UTF-8").newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.chars = CharBuffer.allocate(size);
+		this.bytes = ByteBuffer.allocate((int) (size * encoder.maxBytesPerChar()));
+	}
+
+	private static Flush policy(final String name, final Flush dflt) {
+		final String p = System.getProperty(name);
+		if (p == null) return dflt;
+		try {
+			return Flush.valueOf(p.toUpperCase(java.util.Locale.ROOT));
+		}
+		catch (IllegalArgumentException e) {
+			return dflt;
+		}
+	}
+
+	private final static int size = (int) Math.max(1024,
+			Math.min(Integer.MAX_VALUE >> 3, DeepStack.parseSize(System.getProperty("frege.output.buffer"), 65536)));
+
+	private final static Output outBuffer = new Output(System.out,
+			policy("frege.stdout.flush", Flush.LINE), size);
+	private final static Output errBuffer = new Output(System.err,
+			policy("frege.stderr.flush", Flush.LINE), size);
+
+	/**
+	 * The standard output writer.
+	 */
+	public final static PrintWriter stdout = new PrintWriter(outBuffer, false);
+
+	/**
+	 * The standard error writer.
+	 */
+	public final static PrintWriter stderr = new PrintWriter(errBuffer, false);
+
+	static {
+		java.lang.Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override public void run() { flushAll(); }
+		});
+	}
+
+	/**
+	 * <p>Write all buffered output of {@link Output#stdout} and {@link Output#stderr},
+	 * regardless of the policy.</p>
+	 */
+	public static void flushAll() {
+		try {
+			outBuffer.finish();
+			errBuffer.finish();
+		}
+		catch (IOException e) {
+			// nowhere to report this
+		}
+	}
+
+	/**
+	 * <p>The number of characters searched for a newline so far, not counting the newlines.</p>
+	 *
+	 * <p>Every character is searched at most once, see <code>tests/comp/OutputLines.fr</code>.</p>
+	 */
+	public long scanned() {
+		synchronized (lock) {
+			return scanned;
+		}
+	}
+
+	@Override
+	public void write(final char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock) {
+			boolean eol = false;
+			while (len > 0) {
+				final int n = Math.min(len, chars.remaining());
+				if (policy == Flush.LINE && !eol) {
+					int i = off;
+					while (i < off + n && cbuf[i] != '\n') i++;
+					scanned += i - off;
+					eol = i < off + n;
+				}
+				chars.put(cbuf, off, n);
+				off += n;
+				len -= n;
+				if (!chars.hasRemaining()) drain();
+			}
+			if (eol) sync();
+		}
+	}
+
+	@Override
+	public void write(final String s, int off, int len) throws IOException {
+		synchronized (lock) {
+			boolean eol = false;
+			while (len > 0) {
+				final int n = Math.min(len, chars.remaining());
+				// search only the chunk, not the rest of the string
+				if (policy == Flush.LINE && !eol) {
+					int i = off;
+					while (i < off + n && s.charAt(i) != '\n') i++;
+					scanned += i - off;
+					eol = i < off + n;
+				}
+				chars.put(s, off, off + n);
+				off += n;
+				len -= n;
+				if (!chars.hasRemaining()) drain();
+			}
+			if (eol) sync();
+		}
+	}
+
+	@Override
+	public void write(final int c) throws IOException {
+		synchronized (lock) {
+			if (!chars.hasRemaining()) drain();
+			chars.put((char) c);
+			if (c == '\n' && policy == Flush.LINE) sync();
+		}
+	}
+
+	/**
+	 * <p>Encode the characters in the buffer and write the bytes.</p>
+	 *
+	 * <p>A high surrogate at the end of the buffer stays there, because its
+	 * low surrogate has not been written yet.</p>
+	 */
+	private void drain() throws IOException {
+		drain(false);
+	}
+
+	/**
+	 * <p>Encode the characters in the buffer and write the bytes.</p>
+	 *
+	 * <p>When there will be no more characters, a lone high surrogate at the end
+	 * is written as replacement character, and the encoder is reset for 
+	 * the output that may come nevertheless.</p>
+	 */
+	private void drain(final boolean end) throws IOException {
+		chars.flip();
+		for (;;) {
+			final CoderResult r = encoder.encode(chars, bytes, end);
+			out.write(bytes.array(), 0, bytes.position());
+			bytes.clear();
+			if (r.isUnderflow()) break;
+			if (r.isError()) r.throwException();
+		}
+		if (end) {
+			encoder.flush(bytes);
+			out.write(bytes.array(), 0, bytes.position());
+			bytes.clear();
+			encoder.reset();
+		}
+		chars.compact();
+	}
+
+	/**
+	 * <p>Write all buffered output, regardless of the policy.</p>
+	 */
+	public void sync() throws IOException {
+		synchronized (lock) {
+			drain();
+			out.flush();
+		}
+	}
+
+	/**
+	 * <p>Write all buffered output, including an unpaired high surrogate at the end.</p>
+	 */
+	private void finish() throws IOException {
+		synchronized (lock) {
+			drain(true);
+			out.flush();
+		}
+	}
+
+	/**
+	 * <p>Write all buffered output, unless the policy is <code>exit</code>.</p>
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (policy != Flush.EXIT) sync();
+	}
+
+	/**
+	 * <p>Write all buffered output, the underlying stream is not closed.</p>
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+	}
+}
@@ -0,0 +1,310 @@
+package frege.runtime;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Time, CPU time and memory allocation of the compiler passes.</p>
+ *
+ * <p>When the system property <code>frege.passreport</code> names a file, the compiler
+ * records for every pass and every module it compiles the wall clock time,
+ * the CPU time and the memory allocated by the compiling thread.
+ * When the JVM exits, the records are written to that file, in JSON format,
+ * or in CSV format if the file name ends with <code>.csv</code>.</p>
+ *
+ * <p>Modules are compiled recursively when the compiler runs with <code>-make</code>.
+ * Hence, a pass may contain the complete compilation of other modules. The <i>self</i>
+ * values exclude the passes that ran while a pass was active.</p>
+ *
+ * <p>Two reports can be compared with</p>
+ * <pre>
+ * java -cp fregec.jar frege.runtime.PassReport old-report new-report
+ * </pre>
+ * <p>This prints the self values summed up per pass and per module, and the changes.</p>
+ */
+public final class PassReport {
+	private PassReport() {}
+
+	/**
+	 * The file to write to, or <code>null</code> if passes are not recorded.
+	 */
+	public final static String file = System.getProperty("frege.passreport");
+
+	private final static ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * One record of the report
+	 */
+	final static class Record {
+		String module, pass;
+		long items;
+		/** times in nanoseconds, allocation in bytes, inclusive and self */
+		long wall, cpu, alloc, selfWall, selfCpu, selfAlloc;
+	}
+
+	/**
+	 * A running pass, with its start values and the values of the passes
+	 * that ran while this one was active.
+	 */
+	private final static class Frame {
+		final Frame outer;
+		final long wall = System.nanoTime(), cpu = cpuTime(), alloc = allocated();
+		long innerWall, innerCpu, innerAlloc;
+		Frame(final Frame outer) { this.outer = outer; }
+	}
+
+	private final static ThreadLocal<Frame> running = new ThreadLocal<Frame>();
+
+	private final static List<Record> records = new ArrayList<Record>();
+
+	static {
+		if (file != null) java.lang.Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override public void run() {
+				try {
+					write(file);
+				}
+				catch (IOException e) {
+					System.err.println("can't write " + file + ": " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	static long cpuTime() {
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	static long allocated() {
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+	/**
+	 * <p>Start a pass.</p>
+	 */
+	public static void start() {
+		if (file == null) return;
+		running.set(new Frame(running.get()));
+	}
+
+	/**
+	 * <p>End the pass started last.</p>
+	 *
+	 * @param module the source file that is compiled
+	 * @param pass   the description of the pass
+	 * @param items  the number of items the pass processed
+	 */
+	public static void end(final String module, final String pass, final int items) {
+		if (file == null) return;
+		final Frame f = running.get();
+		if (f == null) return;
+		final Record r = new Record();
+		r.module = module;
+		r.pass   = pass;
+		r.items  = items;
+		r.wall   = System.nanoTime() - f.wall;
+		r.cpu    = cpuTime() - f.cpu;
+		r.alloc  = allocated() - f.alloc;
+		r.selfWall  = r.wall  - f.innerWall;
+		r.selfCpu   = r.cpu   - f.innerCpu;
+		r.selfAlloc = r.alloc - f.innerAlloc;
+		running.set(f.outer);
+		if (f.outer != null) {
+			f.outer.innerWall  += r.wall;
+			f.outer.innerCpu   += r.cpu;
+			f.outer.innerAlloc += r.alloc;
+		}
+		synchronized (records) {
+			records.add(r);
+		}
+	}
+
+	private final static String[] columns = { "module", "pass", "items",
+		"wall_ns", "cpu_ns", "alloc_bytes", "self_wall_ns", "self_cpu_ns", "self_alloc_bytes" };
+
+	private static long[] values(final Record r) {
+		return new long[] { r.items, r.wall, r.cpu, r.alloc, r.selfWall, r.selfCpu, r.selfAlloc };
+	}
+
+	/** quote for JSON */
+	private static String quote(final String s) {
+		return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+
+	/** quote for CSV */
+	private static String quoteCSV(final String s) {
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * Write the report, as CSV if the name ends with <code>.csv</code>, otherwise as JSON.
+	 */
+	static void write(final String name) throws IOException {
+		final boolean csv = name.endsWith(".csv");
+		final PrintWriter w = new PrintWriter(name, "UTF-8");
+		try {
+			synchronized (records) {
+				if (csv) {
+					for (int i = 0; i < columns.length; i++) w.print((i > 0 ? "," : "") + columns[i]);
+					w.println();
+				}
+				else w.println("{\"passes\": [");
+				int n = 0;
+				for (final Record r : records) {
+					final long[] v = values(r);
+					final StringBuilder sb = new StringBuilder();
+					if (csv) {
+						sb.append(quoteCSV(r.module)).append(',').append(quoteCSV(r.pass));
+						for (final long x : v) sb.append(',').append(x);
+					}
+					else {
+						sb.append("  {\"module\": ").append(quote(r.module))
+							.append(", \"pass\": ").append(quote(r.pass));
+						for (int i = 0; i < v.length; i++)
+							sb.append(", \"").append(columns[i+2]).append("\": ").append(v[i]);
+						sb.append(++n < records.size() ? "}," : "}");
+					}
+					w.println(sb);
+				}
+				if (!csv) w.println("]}");
+			}
+		}
+		finally {
+			w.close();
+		}
+	}
+
+	/** A quoted string or a number in CSV */
+	private final static Pattern field = Pattern.compile("\"(?:[^\"]|\"\")*\"|-?\\d+");
+	/** A JSON key-value pair */
+	private final static Pattern pair = Pattern.compile("\"(\\w+)\":\\s*(\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+)");
+
+	/** remove the quotes from a JSON or CSV string */
+	private static String unquote(final String s, final boolean csv) {
+		final String t = s.substring(1, s.length()-1);
+		return csv ? t.replace("\"\"", "\"") : t.replaceAll("\\\\(.)", "$1");
+	}
+
+	/**
+	 * Read a report written by {@link PassReport#write}.
+	 */
+	static List<Record> read(final String name) throws IOException {
+		final List<Record> result = new ArrayList<Record>();
+		final BufferedReader rd = new BufferedReader(new InputStreamReader(new FileInputStream(name), "UTF-8"));
+		try {
+			String line;
+			while ((line = rd.readLine()) != null) {
+				final Map<String, String> m = new LinkedHashMap<String, String>();
+				final boolean csv = line.startsWith("\"");
+				if (line.trim().startsWith("{\"module\"")) {
+					final Matcher p = pair.matcher(line);
+					while (p.find()) m.put(p.group(1), p.group(2));
+				}
+				else if (csv) {
+					final Matcher f = field.matcher(line);
+					for (int i = 0; i < columns.length && f.find(); i++) m.put(columns[i], f.group());
+				}
+				else continue;
+				final Record r = new Record();
+				r.module    = unquote(m.get("module"), csv);
+				r.pass      = unquote(m.get("pass"), csv);
+				r.items     = Long.parseLong(m.get("items"));
+				r.wall      = Long.parseLong(m.get("wall_ns"));
+				r.cpu       = Long.parseLong(m.get("cpu_ns"));
+				r.alloc     = Long.parseLong(m.get("alloc_bytes"));
+				r.selfWall  = Long.parseLong(m.get("self_wall_ns"));
+				r.selfCpu   = Long.parseLong(m.get("self_cpu_ns"));
+				r.selfAlloc = Long.parseLong(m.get("self_alloc_bytes"));
+				result.add(r);
+			}
+		}
+		finally {
+			rd.close();
+		}
+		return result;
+	}
+
+	/** Sum up the self values by pass (when byPass) or by module */
+	private static Map<String, long[]> sum(final List<Record> rs, final boolean byPass) {
+		final Map<String, long[]> m = new LinkedHashMap<String, long[]>();
+		for (final Record r : rs) {
+			final String key = byPass ? r.pass : r.module;
+			long[] v = m.get(key);
+			if (v == null) m.put(key, v = new long[3]);
+			v[0] += r.selfWall;
+			v[1] += r.selfCpu;
+			v[2] += r.selfAlloc;
+		}
+		return m;
+	}
+
+	private static String change(final long o, final long n) {
+		return o == 0 ? "" : String.format(Locale.ROOT, "%+.1f%%", 100.0 * (n - o) / o);
+	}
+
+	private static void compare(final PrintWriter w, final String title,
+			final Map<String, long[]> old, final Map<String, long[]> neu) {
+		final List<String> keys = new ArrayList<String>(neu.keySet());
+		for (final String k : old.keySet()) if (!neu.containsKey(k)) keys.add(k);
+		final long[] zero = new long[3];
+		// biggest changes of the wall clock time first
+		Collections.sort(keys, new Comparator<String>() {
+			public int compare(final String a, final String b) {
+				final long[] oa = old.containsKey(a) ? old.get(a) : zero, na = neu.containsKey(a) ? neu.get(a) : zero;
+				final long[] ob = old.containsKey(b) ? old.get(b) : zero, nb = neu.containsKey(b) ? neu.get(b) : zero;
+				// no Long.compare, this must compile with -source 1.6
+				final long x = Math.abs(nb[0] - ob[0]), y = Math.abs(na[0] - oa[0]);
+				return x < y ? -1 : x == y ? 0 : 1;
+			}
+		});
+		w.printf(Locale.ROOT, "%n%-40s %10s %10s %8s %10s %10s %8s %10s %10s %8s%n", title,
+				"wall ms", "was", "change", "cpu ms", "was", "change", "alloc MB", "was", "change");
+		final long[] to = new long[3], tn = new long[3];
+		for (final String k : keys) {
+			final long[] o = old.containsKey(k) ? old.get(k) : zero;
+			final long[] n = neu.containsKey(k) ? neu.get(k) : zero;
+			for (int i = 0; i < 3; i++) { to[i] += o[i]; tn[i] += n[i]; }
+			line(w, k, o, n);
+		}
+		line(w, "total", to, tn);
+	}
+
+	private static void line(final PrintWriter w, final String k, final long[] o, final long[] n) {
+		w.printf(Locale.ROOT, "%-40.40s %10.1f %10.1f %8s %10.1f %10.1f %8s %10.1f %10.1f %8s%n", k,
+				n[0] / 1e6, o[0] / 1e6, change(o[0], n[0]),
+				n[1] / 1e6, o[1] / 1e6, change(o[1], n[1]),
+				n[2] / 1048576.0, o[2] / 1048576.0, change(o[2], n[2]));
+	}
+
+	/**
+	 * Compare two reports.
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: java frege.runtime.PassReport old-report new-report");
+			System.exit(2);
+		}
+		final List<Record> old = read(args[0]), neu = read(args[1]);
+		final PrintWriter w = new PrintWriter(System.out);
+		w.println("self time and allocation of " + args[1] + " compared to " + args[0]);
+		compare(w, "pass", sum(old, true), sum(neu, true));
+		compare(w, "module", sum(old, false), sum(neu, false));
+		w.flush();
+	}
+}
@@ -138,4 +138,107 @@ public final class Regex {
         return clone(m).replaceAll(r);
     }
 
+    /**
+     * <p>Tell if a pattern matches somewhere in a string.</p>
+     *
+     * <p>The {@link Matcher} is private to this method, hence it is not copied.</p>
+     */
+    public static boolean found(final Pattern p, final CharSequence s) {
+        return p.matcher(s).find();
+    }
+
+    /**
+     * <p>Find the first match of a pattern in a string.</p>
+     *
+     * <p>Unlike <code>find(p.matcher(s))</code>, this does not copy the fresh
+     * {@link Matcher}, because no other code has a reference to it yet.</p>
+     * @return the matcher, if a match was found, otherwise <b>null</b>.
+     */
+    public static Matcher first(final Pattern p, final CharSequence s) {
+        final Matcher m = p.matcher(s);
+        if (m.find()) return m;
+        return null;
+    }
+
+    /**
+     * <p>Reset a mutable matcher with a new input.</p>
+     * @see java.util.regex.Matcher#reset(CharSequence)
+     */
+    public static void reset(final Matcher m, final CharSequence s) {
+        m.reset(s);
+    }
+
+    /**
+     * <p>Make a mutable matcher use another pattern.</p>
+     * @see java.util.regex.Matcher#usePattern
+     */
+    public static void setPattern(final Matcher m, final Pattern p) {
+        m.usePattern(p);
+    }
+
+    /**
+     * <p>Find the next match with a mutable matcher, and return its result.</p>
+     *
+     * <p>This is used to iterate over all matches in a string with a single {@link Matcher}.
+     * Only the offsets of the groups are copied to the result,
+     * which refers to the input string, instead of the whole state of the matcher.</p>
+     *
+     * @param  m    a {@link Matcher} that is not shared
+     * @param  text the input of the matcher
+     * @return the result of the match, or <b>null</b> if there is none.
+     */
+    public static MatchResult next(final Matcher m, final String text) {
+        if (m.find()) return new Match(m, text);
+        return null;
+    }
+
+    /**
+     * <p>The immutable result of a match operation.</p>
+     *
+     * <p>It holds the input string and the offsets of the groups.</p>
+     */
+    public final static class Match implements MatchResult {
+        private final String text;
+        private final int[] offsets;
+
+        public Match(final MatchResult m, final String text) {
+            final int n = m.groupCount() + 1;
+            this.text = text;
+            this.offsets = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                offsets[2 * i] = m.start(i);
+                offsets[2 * i + 1] = m.end(i);
+            }
+        }
+
+        private void check(final int group) {
+            if (group < 0 || 2 * group >= offsets.length)
+                throw new IndexOutOfBoundsException("No group " + group);
+        }
+
+        public int start() { return offsets[0]; }
+
+        public int start(final int group) {
+            check(group);
+            return offsets[2 * group];
+        }
+
+        public int end() { return offsets[1]; }
+
+        public int end(final int group) {
+            check(group);
+            return offsets[2 * group + 1];
+        }
+
+        public String group() { return group(0); }
+
+        public String group(final int group) {
+            check(group);
+            final int from = offsets[2 * group];
+            if (from < 0) return null;
+            return text.substring(from, offsets[2 * group + 1]);
+        }
+
+        public int groupCount() { return offsets.length / 2 - 1; }
+    }
 }
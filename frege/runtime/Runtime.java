@@ -41,7 +41,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
@@ -77,26 +76,24 @@ public class Runtime {
 	}
 	
 	/**
-	 * Provide UTF-8 encoded standard printer for stdout with automatic line flushing
-	 * <p>Must be thread local so that it works in the online REPL, for instance. </p>
+	 * Provide UTF-8 encoded standard printer for stdout, see {@link Output} for the flush policy
+	 * <p>Must be thread local so that it works in the online REPL, for instance.
+	 * By default, all threads share {@link Output#stdout}.</p>
 	 */
 	public static ThreadLocal<PrintWriter> stdout = new ThreadLocal<PrintWriter>() {
 		@Override protected PrintWriter initialValue() {
-			return new PrintWriter(
-					new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
-					true);
+			return Output.stdout;
 		}
 	};
 	
 	/**
-	 * Provide UTF-8 encoded standard printer for stderr with autoflush
-	 *  <p>Must be thread local so that it works in the online REPL, for instance. </p>
+	 * Provide UTF-8 encoded standard printer for stderr, see {@link Output} for the flush policy
+	 *  <p>Must be thread local so that it works in the online REPL, for instance.
+	 *  By default, all threads share {@link Output#stderr}.</p>
 	 */
 	public static ThreadLocal<PrintWriter> stderr = new ThreadLocal<PrintWriter>() {
 		@Override protected PrintWriter initialValue() {
-			return new PrintWriter(
-					new OutputStreamWriter(System.err, StandardCharsets.UTF_8),
-					true);
+			return Output.stderr;
 		}
 	};
 	
@@ -123,7 +120,7 @@ public class Runtime {
 			c = a.charAt(i++);
 			if (c<' ' || c == '\177') {
 				sr.append('\\');
-				sr.append(java.lang.String.format("%o", (int) c));
+				sr.append(java.lang.Integer.toOctalString(c));
 			}
 			else if (c == '\\' || c == '"') {
 				sr.append('\\');
@@ -143,7 +140,7 @@ public class Runtime {
         sr.append("'");
         if (c<' ' || c == '\177') {
             sr.append('\\');
-            sr.append(java.lang.String.format("%o", (int) c));
+            sr.append(java.lang.Integer.toOctalString(c));
         }
         else if (c == '\\' || c == '\'') {
             sr.append('\\');
@@ -218,12 +215,16 @@ public class Runtime {
     *  The resulting {@link Lambda} then actually executes the frege code
     *  when evaluated.</p>
     *
+    *  <p>With <code>-Dfrege.stack.main=true</code>, the program runs on a thread 
+    *  with a large stack, see {@link DeepStack}.</p>
     */
 	public static java.lang.Integer runMain(final Object arg) {
 		java.lang.Integer xit = null;
 		try {
-			Object mainres = Delayed.delayed(arg).call();
-			mainres = Delayed.<Object>forced(mainres);
+			final java.util.concurrent.Callable<Object> main = new java.util.concurrent.Callable<Object>() {
+				public Object call() { return evalMain(arg); }
+			};
+			final Object mainres = DeepStack.mainWanted() ? DeepStack.runMain(main) : evalMain(arg);
 			if (mainres instanceof java.lang.Integer) {
 				xit = (java.lang.Integer)mainres;
 			}
@@ -235,12 +236,23 @@ public class Runtime {
 //			throw new Error(ex); // ex.printStackTrace();
 //		}
 		finally {
+			if (DeepStack.verbose) 
+				stderr.get().println("frege.stack: " + DeepStack.retries() 
+					+ " evaluation(s) continued with a larger stack.");
 			stderr.get().flush();
 			stdout.get().flush();
+			Output.flushAll();
 		}
 		return xit;
 	}
 	
+	/**
+	 * Evaluate the main program.
+	 */
+	private static Object evalMain(final Object arg) {
+		return Delayed.<Object>forced(Delayed.delayed(arg).call());
+	}
+	
 	final public static void exit() {
 //		stdout.close();
 //		stderr.close();
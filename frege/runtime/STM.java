@@ -0,0 +1,270 @@
+package frege.runtime;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Software transactional memory.</p>
+ *
+ * <p>A transaction is an <code>IO</code> action that reads and writes
+ * {@link TVar}s through {@link STM#read} and {@link STM#write}, and is run
+ * with {@link STM#atomically}. Transactions are optimistic: they do not lock
+ * anything while they run.</p>
+ *
+ * <ul>
+ * <li>A global clock is incremented on every commit that writes something.
+ * Every {@link TVar} remembers the clock value of its last commit.</li>
+ * <li>Writes go to a log that is private to the transaction.</li>
+ * <li>A read checks that the variable was not committed to after the transaction
+ * started. Hence, a transaction sees a consistent state of all variables.</li>
+ * <li>On commit, the variables that were written are locked, the variables that were read
+ * are validated, and the log is written back.</li>
+ * <li>When a read or the commit detects a conflict, the transaction is aborted
+ * and run again.</li>
+ * </ul>
+ *
+ * <p>When a transaction calls {@link STM#retry()}, it is aborted and run again
+ * after one of the variables it has read has changed. Until then, the thread blocks.
+ * With {@link STM#orElse}, an alternative can be tried instead.</p>
+ *
+ * <p>Transactions can run on any thread, including the threads of the executor service
+ * that runs <code>forkIO</code> and <code>async</code> actions, see
+ * {@link Concurrent#executorService()}. A blocked transaction parks its thread,
+ * hence, when the executor uses virtual threads, it does not block an OS thread.</p>
+ *
+ * <p>The numbers of commits, aborts and retries are counted in {@link Stats}.</p>
+ */
+public final class STM {
+	private STM() {}
+
+	/**
+	 * The global version clock.
+	 */
+	private final static AtomicLong clock = new AtomicLong(0);
+
+	/**
+	 * <p>Thrown to abort a transaction that found a conflict.</p>
+	 *
+	 * <p>This is an {@link Error}, so that it is not caught by code that handles exceptions.</p>
+	 */
+	private final static class Conflict extends Error {
+		static final long serialVersionUID = 1L;
+		Conflict() { super("STM conflict"); }
+		@Override public Throwable fillInStackTrace() { return this; }
+	}
+
+	/**
+	 * <p>Thrown by {@link STM#retry()}.</p>
+	 */
+	private final static class Retry extends Error {
+		static final long serialVersionUID = 1L;
+		Retry() { super("STM retry"); }
+		@Override public Throwable fillInStackTrace() { return this; }
+	}
+
+	private final static Conflict conflict = new Conflict();
+	private final static Retry retry = new Retry();
+
+	/**
+	 * The running transaction of a thread.
+	 */
+	private final static class Tx {
+		/** the clock value when the transaction started */
+		final long start = clock.get();
+		/** the variables read, with their versions */
+		final Map<TVar, Long> reads = new IdentityHashMap<TVar, Long>();
+		/** the log of written values */
+		Map<TVar, Object> writes = new IdentityHashMap<TVar, Object>();
+
+		Object read(final TVar v) {
+			if (writes.containsKey(v)) return writes.get(v);
+			final long version = v.version;
+			if (v.isLocked()) throw conflict;
+			final Object value = v.value;
+			if (v.isLocked() || v.version != version || version > start) throw conflict;
+			reads.put(v, version);
+			return value;
+		}
+
+		void write(final TVar v, final Object value) {
+			writes.put(v, value);
+		}
+
+		/**
+		 * Commit the log.
+		 *
+		 * @return <b>false</b> if a conflict was found.
+		 */
+		boolean commit() {
+			if (writes.isEmpty()) return true;	// reads were consistent at start
+			final ArrayList<TVar> locked = new ArrayList<TVar>(writes.size());
+			try {
+				for (final TVar v : writes.keySet()) {
+					if (!v.tryLock(this)) return false;
+					locked.add(v);
+				}
+				final long version = clock.incrementAndGet();
+				if (version != start + 1) {
+					for (final Map.Entry<TVar, Long> e : reads.entrySet()) {
+						final TVar v = e.getKey();
+						if (v.version != e.getValue() || v.isLockedByOther(this)) return false;
+					}
+				}
+				for (final Map.Entry<TVar, Object> e : writes.entrySet()) {
+					final TVar v = e.getKey();
+					v.value   = e.getValue();
+					v.version = version;
+				}
+			}
+			finally {
+				for (final TVar v : locked) v.unlock();
+			}
+			for (final TVar v : locked) v.wakeWaiters();
+			return true;
+		}
+
+		/**
+		 * <p>Block until one of the variables read was changed.</p>
+		 */
+		void await() {
+			if (reads.isEmpty())
+				throw new Undefined("STM.retry: the transaction is blocked indefinitely");
+			final Waiter w = new Waiter();
+			for (final TVar v : reads.keySet()) v.addWaiter(w);
+			boolean interrupted = false;
+			try {
+				for (;;) {
+					try {
+						Concurrent.block(new Concurrent.Blocker() {
+							public boolean isReleasable() { return w.woken || changed(); }
+						});
+						break;
+					}
+					catch (InterruptedException e) {
+						// the transaction cannot be abandoned
+						interrupted = true;
+					}
+				}
+			}
+			finally {
+				for (final TVar v : reads.keySet()) v.removeWaiter(w);
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+
+		/** Tell if one of the variables read was changed. */
+		private boolean changed() {
+			for (final Map.Entry<TVar, Long> e : reads.entrySet()) {
+				if (e.getKey().version != e.getValue()) return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * <p>A transaction that waits for a change of the variables it has read.</p>
+	 */
+	final static class Waiter {
+		private final Thread thread = Thread.currentThread();
+		volatile boolean woken = false;
+		void wake() {
+			woken = true;
+			LockSupport.unpark(thread);
+		}
+	}
+
+	private final static ThreadLocal<Tx> current = new ThreadLocal<Tx>();
+
+	private static Tx current(final String what) {
+		final Tx tx = current.get();
+		if (tx == null) throw new Undefined(what + " outside of a transaction");
+		return tx;
+	}
+
+	/**
+	 * <p>Run a transaction.</p>
+	 *
+	 * <p>The action is run again as long as there are conflicts with other transactions,
+	 * and after it called {@link STM#retry()}.
+	 * Note that any other effects of the action will be repeated.</p>
+	 *
+	 * @param action an <code>IO</code> action
+	 * @return the result of the action
+	 * @throws Undefined if this is called in a transaction
+	 */
+	public static Object atomically(final Lambda action) {
+		if (current.get() != null) throw new Undefined("STM.atomically: nested transaction");
+		for (int attempt = 0;; attempt++) {
+			final Tx tx = new Tx();
+			current.set(tx);
+			try {
+				final Object r = action.apply(0).result().<Object>forced();
+				if (tx.commit()) {
+					if (Stats.enabled) Stats.stmCommits.inc();
+					return r;
+				}
+				if (Stats.enabled) Stats.stmAborts.inc();
+			}
+			catch (Conflict c) {
+				if (Stats.enabled) Stats.stmAborts.inc();
+			}
+			catch (Retry r) {
+				if (Stats.enabled) Stats.stmRetries.inc();
+				current.remove();
+				tx.await();
+				attempt = 0;
+				continue;
+			}
+			finally {
+				current.remove();
+			}
+			// give the transactions we are in conflict with a chance to finish
+			if (attempt > 3) Thread.yield();
+		}
+	}
+
+	/**
+	 * <p>Read a transactional variable in the current transaction.</p>
+	 */
+	public static Object read(final TVar v) {
+		return current("STM.read").read(v);
+	}
+
+	/**
+	 * <p>Write a transactional variable in the current transaction.</p>
+	 */
+	public static void write(final TVar v, final Object value) {
+		current("STM.write").write(v, value);
+	}
+
+	/**
+	 * <p>Abort the current transaction, and run it again when one of the variables
+	 * it has read changes.</p>
+	 */
+	public static Object retry() {
+		current("STM.retry");
+		throw retry;
+	}
+
+	/**
+	 * <p>Run the first action, and if it calls {@link STM#retry()}, the second one.</p>
+	 *
+	 * <p>The writes of the first action are undone before the second one runs.
+	 * If both actions retry, the transaction waits for changes of the variables
+	 * read by any of them.</p>
+	 */
+	public static Object orElse(final Lambda first, final Lambda second) {
+		final Tx tx = current("STM.orElse");
+		final Map<TVar, Object> saved = new IdentityHashMap<TVar, Object>(tx.writes);
+		try {
+			return first.apply(0).result().<Object>forced();
+		}
+		catch (Retry r) {
+			tx.writes = saved;
+			return second.apply(0).result().<Object>forced();
+		}
+	}
+}
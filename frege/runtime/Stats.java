@@ -0,0 +1,203 @@
+package frege.runtime;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Statistics about the Frege runtime.</p>
+ *
+ * <p>Counting is switched on with <code>-Dfrege.stats=true</code>. Otherwise, the
+ * counters stay at 0 and the just in time compiler removes the code that updates them.
+ * The counters can be read through the static methods of this class, or through
+ * JMX, see {@link Stats#register()}. With <code>-Dfrege.stats.jmx=true</code>,
+ * the MBean is registered as soon as this class is initialized.</p>
+ *
+ * <p>Counters are striped, that is, every counter has a number of cells,
+ * and a thread updates the cell selected by its identity. This
+ * way, threads rarely compete for updates. Reading a counter adds up all cells.</p>
+ */
+public final class Stats implements StatsMBean {
+
+	/**
+	 * Tell if counting is switched on.
+	 */
+	public final static boolean enabled = Boolean.getBoolean("frege.stats");
+
+	/**
+	 * <p>A striped counter.</p>
+	 */
+	final static class Counter {
+		/** number of longs between two cells, to keep them in different cache lines */
+		private final static int PAD = 8;
+		private final static int STRIPES;
+		static {
+			int n = 1;
+			while (n < 2 * java.lang.Runtime.getRuntime().availableProcessors()) n += n;
+			STRIPES = n;
+		}
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+		private static int cell() {
+			final long id = Thread.currentThread().getId();
+			return (int) ((id ^ (id >>> 7)) & (STRIPES - 1)) * PAD;
+		}
+		/** count 1 */
+		final void inc() { cells.getAndIncrement(cell()); }
+		/** count x */
+		final void add(final long x) { cells.getAndAdd(cell(), x); }
+		/** the sum of all cells */
+		final long sum() {
+			long s = 0;
+			for (int i = 0; i < STRIPES; i++) s += cells.get(i * PAD);
+			return s;
+		}
+		/** set all cells to 0 */
+		final void reset() {
+			for (int i = 0; i < STRIPES; i++) cells.set(i * PAD, 0);
+		}
+	}
+
+	final static Counter created     = new Counter();
+	final static Counter forced      = new Counter();
+	final static Counter cached      = new Counter();
+	final static Counter steps       = new Counter();
+	final static Counter blackHoles  = new Counter();
+	final static Counter forks       = new Counter();
+	final static Counter sparksConverted  = new Counter();
+	final static Counter sparksFizzled    = new Counter();
+	final static Counter sparksOverflowed = new Counter();
+	final static Counter managedBlocks = new Counter();
+	final static Counter mvarBlocks  = new Counter();
+	final static Counter mvarNanos   = new Counter();
+	final static Counter stmCommits  = new Counter();
+	final static Counter stmAborts   = new Counter();
+	final static Counter stmRetries  = new Counter();
+
+	private Stats() {}
+
+	/** @return the number of {@link Delayed} values created */
+	public static long thunksCreated()  { return created.sum(); }
+	/** @return the number of {@link Delayed} values evaluated */
+	public static long thunksForced()   { return forced.sum(); }
+	/** @return the number of times {@link Delayed#call} found the value already evaluated */
+	public static long thunksCached()   { return cached.sum(); }
+	/** @return the number of intermediate values stepped through by {@link Delayed#call} */
+	public static long evalSteps()      { return steps.sum(); }
+	/** @return the number of times a {@link Delayed} value was found under evaluation */
+	public static long blackHoleHits()  { return blackHoles.sum(); }
+	/** @return the number of {@link Concurrent#fork} calls */
+	public static long forks()          { return forks.sum(); }
+	/** @return the number of sparks that were evaluated in parallel, see {@link Concurrent#fork} */
+	public static long sparksConverted()  { return sparksConverted.sum(); }
+	/** @return the number of sparks that found their value evaluated or under evaluation */
+	public static long sparksFizzled()    { return sparksFizzled.sum(); }
+	/** @return the number of sparks dropped because enough work was queued already */
+	public static long sparksOverflowed() { return sparksOverflowed.sum(); }
+	/** @return the number of tasks in the fork/join pool, see {@link Concurrent#fork} */
+	public static long forkJoinQueued() { return Concurrent.forkJoinQueued(); }
+	/** @return the number of tasks in the executor service, see {@link Concurrent#executorService} */
+	public static long executorQueued() { return Concurrent.executorQueued(); }
+	/** @return the number of times a fork/join worker waited for another thread, see {@link Concurrent#block} */
+	public static long managedBlocks()  { return managedBlocks.sum(); }
+	/** @return the number of times a thread had to wait on a {@code MVar} */
+	public static long mvarBlocks()     { return mvarBlocks.sum(); }
+	/** @return the total time in nanoseconds threads had to wait on a {@code MVar} */
+	public static long mvarBlockedNanos() { return mvarNanos.sum(); }
+	/** @return the number of committed transactions, see {@link STM} */
+	public static long stmCommits()     { return stmCommits.sum(); }
+	/** @return the number of transactions that were run again because of conflicts */
+	public static long stmAborts()      { return stmAborts.sum(); }
+	/** @return the number of transactions that blocked in {@link STM#retry()} */
+	public static long stmRetries()     { return stmRetries.sum(); }
+
+	/**
+	 * <p>Record that a thread had to wait on a {@code MVar} for the given time.</p>
+	 */
+	public static void mvarBlocked(final long nanos) {
+		if (enabled) {
+			mvarBlocks.inc();
+			mvarNanos.add(nanos);
+		}
+	}
+
+	/**
+	 * <p>Set all counters to 0.</p>
+	 */
+	public static void resetAll() {
+		for (Counter c : new Counter[] {created, forced, cached, steps, blackHoles, forks,
+				sparksConverted, sparksFizzled, sparksOverflowed, managedBlocks, mvarBlocks, mvarNanos,
+				stmCommits, stmAborts, stmRetries})
+			c.reset();
+	}
+
+	/**
+	 * <p>A one line summary of the counters.</p>
+	 */
+	public static String summary() {
+		return "thunks created=" + thunksCreated()
+			+ " forced=" + thunksForced()
+			+ " cached=" + thunksCached()
+			+ " steps=" + evalSteps()
+			+ " blackholes=" + blackHoleHits()
+			+ " forks=" + forks()
+			+ " converted=" + sparksConverted()
+			+ " fizzled=" + sparksFizzled()
+			+ " overflowed=" + sparksOverflowed()
+			+ " fjqueued=" + forkJoinQueued()
+			+ " execqueued=" + executorQueued()
+			+ " managedblocks=" + managedBlocks()
+			+ " mvarblocks=" + mvarBlocks()
+			+ " mvarblockednanos=" + mvarBlockedNanos()
+			+ " stmcommits=" + stmCommits()
+			+ " stmaborts=" + stmAborts()
+			+ " stmretries=" + stmRetries();
+	}
+
+	/**
+	 * The name of the MBean.
+	 */
+	public final static String objectName = "frege.runtime:type=Stats";
+
+	private static boolean registered = false;
+
+	/**
+	 * <p>Register the statistics MBean with the platform MBean server,
+	 * unless this was done before.</p>
+	 *
+	 * @throws Undefined if the registration fails
+	 */
+	public static synchronized void register() {
+		if (registered) return;
+		try {
+			java.lang.management.ManagementFactory.getPlatformMBeanServer().registerMBean(
+					new Stats(), new javax.management.ObjectName(objectName));
+			registered = true;
+		}
+		catch (Exception e) {
+			throw new Undefined("cannot register " + objectName, e);
+		}
+	}
+
+	static {
+		if (Boolean.getBoolean("frege.stats.jmx")) register();
+	}
+
+	public long getThunksCreated()  { return thunksCreated(); }
+	public long getThunksForced()   { return thunksForced(); }
+	public long getThunksCached()   { return thunksCached(); }
+	public long getEvalSteps()      { return evalSteps(); }
+	public long getBlackHoleHits()  { return blackHoleHits(); }
+	public long getForks()          { return forks(); }
+	public long getSparksConverted()  { return sparksConverted(); }
+	public long getSparksFizzled()    { return sparksFizzled(); }
+	public long getSparksOverflowed() { return sparksOverflowed(); }
+	public long getForkJoinQueued() { return forkJoinQueued(); }
+	public long getExecutorQueued() { return executorQueued(); }
+	public long getManagedBlocks()  { return managedBlocks(); }
+	public long getMVarBlocks()     { return mvarBlocks(); }
+	public long getMVarBlockedNanos() { return mvarBlockedNanos(); }
+	public long getStmCommits()     { return stmCommits(); }
+	public long getStmAborts()      { return stmAborts(); }
+	public long getStmRetries()     { return stmRetries(); }
+	public boolean isEnabled()      { return enabled; }
+	public void reset()             { resetAll(); }
+}
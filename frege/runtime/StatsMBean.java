@@ -0,0 +1,47 @@
+package frege.runtime;
+
+/**
+ * <p>The management interface of the Frege runtime statistics.</p>
+ *
+ * @see Stats
+ */
+public interface StatsMBean {
+	/** @return the number of lazy values created */
+	public long getThunksCreated();
+	/** @return the number of lazy values evaluated */
+	public long getThunksForced();
+	/** @return the number of times an already evaluated lazy value was asked for its value */
+	public long getThunksCached();
+	/** @return the number of intermediate lazy values stepped through during evaluation */
+	public long getEvalSteps();
+	/** @return the number of times a lazy value was found under evaluation */
+	public long getBlackHoleHits();
+	/** @return the number of sparks created with <code>par</code> */
+	public long getForks();
+	/** @return the number of sparks that were evaluated in parallel */
+	public long getSparksConverted();
+	/** @return the number of sparks that found their value already evaluated or under evaluation */
+	public long getSparksFizzled();
+	/** @return the number of sparks that were dropped because enough work was queued */
+	public long getSparksOverflowed();
+	/** @return the number of tasks waiting in the fork/join pool of the Frege runtime */
+	public long getForkJoinQueued();
+	/** @return the number of tasks waiting in the executor service of the Frege runtime */
+	public long getExecutorQueued();
+	/** @return the number of times a fork/join worker had to wait for another thread */
+	public long getManagedBlocks();
+	/** @return the number of times a thread had to wait on a {@code MVar} */
+	public long getMVarBlocks();
+	/** @return the total time in nanoseconds threads had to wait on a {@code MVar} */
+	public long getMVarBlockedNanos();
+	/** @return the number of committed STM transactions */
+	public long getStmCommits();
+	/** @return the number of STM transactions that were run again because of conflicts */
+	public long getStmAborts();
+	/** @return the number of STM transactions that waited in <code>retry</code> */
+	public long getStmRetries();
+	/** @return true if counting is switched on */
+	public boolean isEnabled();
+	/** Reset all counters to 0 */
+	public void reset();
+}
@@ -0,0 +1,108 @@
+package frege.runtime;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <p>A transactional variable, see {@link STM}.</p>
+ *
+ * <p>The value can be read outside of transactions with {@link TVar#value()},
+ * but changed only through {@link STM#write} in a transaction.</p>
+ */
+public final class TVar {
+
+	/**
+	 * The committed value.
+	 */
+	volatile Object value;
+
+	/**
+	 * The value of the {@link STM} clock when the value was last committed.
+	 */
+	volatile long version = 0;
+
+	/**
+	 * The transaction that is committing a new value, or <code>null</code>.
+	 */
+	private volatile Object owner = null;
+
+	private static final AtomicReferenceFieldUpdater<TVar, Object>
+		OWNER = AtomicReferenceFieldUpdater.newUpdater(TVar.class, Object.class, "owner");
+
+	/**
+	 * <p>Transactions that wait for a change of this variable, see {@link STM#retry()}.</p>
+	 *
+	 * <p>Changed only while holding the lock of this {@link TVar}.</p>
+	 */
+	private volatile ArrayList<STM.Waiter> waiters = null;
+
+	/** Create a transactional variable with an initial value. */
+	public TVar(final Object value) {
+		this.value = value;
+	}
+
+	/**
+	 * <p>The committed value.</p>
+	 */
+	public Object value() {
+		return value;
+	}
+
+	/** Tell if some transaction is committing a new value. */
+	final boolean isLocked() {
+		return owner != null;
+	}
+
+	/** Tell if another transaction than the given one is committing a new value. */
+	final boolean isLockedByOther(final Object tx) {
+		final Object o = owner;
+		return o != null && o != tx;
+	}
+
+	/** Lock for the commit of the given transaction, without waiting. */
+	final boolean tryLock(final Object tx) {
+		return OWNER.compareAndSet(this, null, tx);
+	}
+
+	/** Release the lock after a commit */
+	final void unlock() {
+		owner = null;
+	}
+
+	/**
+	 * <p>Register a transaction that waits for a change.</p>
+	 */
+	final synchronized void addWaiter(final STM.Waiter w) {
+		ArrayList<STM.Waiter> ws = waiters;
+		if (ws == null) {
+			ws = new ArrayList<STM.Waiter>(2);
+			ws.add(w);
+			waiters = ws;
+		}
+		else ws.add(w);
+	}
+
+	/**
+	 * <p>Deregister a transaction that waited for a change.</p>
+	 */
+	final synchronized void removeWaiter(final STM.Waiter w) {
+		final ArrayList<STM.Waiter> ws = waiters;
+		if (ws != null) {
+			ws.remove(w);
+			if (ws.isEmpty()) waiters = null;
+		}
+	}
+
+	/**
+	 * <p>Wake up all waiting transactions, after a new value was committed.</p>
+	 */
+	final void wakeWaiters() {
+		if (waiters == null) return;
+		synchronized (this) {
+			final ArrayList<STM.Waiter> ws = waiters;
+			if (ws == null) return;
+			waiters = null;
+			for (final STM.Waiter w : ws) w.wake();
+		}
+	}
+}
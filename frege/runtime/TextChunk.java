@@ -0,0 +1,206 @@
+package frege.runtime;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * <p>An immutable slice of a character array.</p>
+ *
+ * <p>This implements the <code>TextChunk</code> type of <code>frege.data.Text</code>,
+ * the building block of lazy <code>Text</code>.
+ * {@link TextChunk#take}, {@link TextChunk#drop} and {@link TextChunk#slice}
+ * share the array of the original, unlike {@link String#substring}.</p>
+ *
+ * <p>The array must not be changed once it is wrapped. Therefore, it is copied
+ * when a {@link TextChunk} is made from an array that is not private to this class.</p>
+ */
+public final class TextChunk implements Comparable<TextChunk>, CharSequence {
+
+	private final char[] chars;
+	private final int offset;
+	private final int length;
+
+	private TextChunk(final char[] chars, final int offset, final int length) {
+		this.chars = chars;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/** The empty {@link TextChunk}. */
+	public final static TextChunk empty = new TextChunk(new char[0], 0, 0);
+
+	/** Wrap an array that is not used elsewhere. */
+	private static TextChunk wrap(final char[] chars, final int length) {
+		return length == 0 ? empty : new TextChunk(chars, 0, length);
+	}
+
+	/**
+	 * <p>The characters of a {@link String}.</p>
+	 */
+	public static TextChunk fromString(final String s) {
+		return wrap(s.toCharArray(), s.length());
+	}
+
+	/**
+	 * <p>A {@link TextChunk} of length 1.</p>
+	 */
+	public static TextChunk singleton(final char c) {
+		return wrap(new char[] { c }, 1);
+	}
+
+	/**
+	 * <p>The characters as {@link String}.</p>
+	 */
+	@Override
+	public String toString() {
+		return new String(chars, offset, length);
+	}
+
+	public int length() { return length; }
+
+	public boolean isEmpty() { return length == 0; }
+
+	/**
+	 * <p>The character at the given index.</p>
+	 *
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 */
+	public char charAt(final int i) {
+		if (i < 0 || i >= length)
+			throw new IndexOutOfBoundsException("TextChunk.index: " + i + " not in [0.." + length + ")");
+		return chars[offset + i];
+	}
+
+	public CharSequence subSequence(final int from, final int to) {
+		if (from < 0 || from > to || to > length)
+			throw new IndexOutOfBoundsException("TextChunk.subSequence: [" + from + ".." + to + ")");
+		return slice(from, to);
+	}
+
+	/**
+	 * <p>The first <code>n</code> characters, without copying.</p>
+	 */
+	public TextChunk take(final int n) {
+		if (n >= length) return this;
+		if (n <= 0) return empty;
+		return new TextChunk(chars, offset, n);
+	}
+
+	/**
+	 * <p>All but the first <code>n</code> characters, without copying.</p>
+	 */
+	public TextChunk drop(final int n) {
+		if (n <= 0) return this;
+		if (n >= length) return empty;
+		return new TextChunk(chars, offset + n, length - n);
+	}
+
+	/**
+	 * <p>The characters from index <code>from</code> up to, but not including, <code>to</code>,
+	 * without copying. The indexes are clamped to the valid range.</p>
+	 */
+	public TextChunk slice(final int from, final int to) {
+		return take(to).drop(from);
+	}
+
+	/**
+	 * <p>Concatenate two {@link TextChunk}s.</p>
+	 */
+	public TextChunk append(final TextChunk other) {
+		if (other.length == 0) return this;
+		if (length == 0) return other;
+		final char[] result = new char[length + other.length];
+		System.arraycopy(chars, offset, result, 0, length);
+		System.arraycopy(other.chars, other.offset, result, length, other.length);
+		return wrap(result, result.length);
+	}
+
+	/**
+	 * <p>Concatenate many {@link TextChunk}s, copying each one only once.</p>
+	 */
+	public static TextChunk concat(final TextChunk[] xs) {
+		long n = 0;
+		for (final TextChunk x : xs) n += x.length;
+		if (n > Integer.MAX_VALUE - 8)
+			throw new OutOfMemoryError("TextChunk.concat: result too large");
+		final char[] result = new char[(int) n];
+		int at = 0;
+		for (final TextChunk x : xs) {
+			System.arraycopy(x.chars, x.offset, result, at, x.length);
+			at += x.length;
+		}
+		return wrap(result, result.length);
+	}
+
+	/**
+	 * <p>A copy that holds on to its characters only.</p>
+	 *
+	 * <p>Use this to let the array of a large {@link TextChunk} be garbage collected,
+	 * when only a small slice of it is still needed.</p>
+	 */
+	public TextChunk copy() {
+		return wrap(Arrays.copyOfRange(chars, offset, offset + length), length);
+	}
+
+	/**
+	 * <p>The index of the first occurrence of a character at or after <code>from</code>, or -1.</p>
+	 */
+	public int indexOf(final char c, final int from) {
+		for (int i = Math.max(from, 0); i < length; i++)
+			if (chars[offset + i] == c) return i;
+		return -1;
+	}
+
+	/**
+	 * <p>Read the characters that are available, but at most <code>max</code> of them.</p>
+	 *
+	 * <p>Blocks until some characters are available. A surrogate pair
+	 * is never split, hence the result may have <code>max+1</code> characters.</p>
+	 *
+	 * @return the characters read, or <code>null</code> at the end of the input
+	 */
+	public static TextChunk read(final Reader r, final int max) throws IOException {
+		final char[] buf = new char[Math.max(max, 1) + 1];
+		int n = r.read(buf, 0, buf.length - 1);
+		if (n < 0) return null;
+		if (n > 0 && Character.isHighSurrogate(buf[n-1])) {
+			final int c = r.read();
+			if (c >= 0) buf[n++] = (char) c;
+		}
+		return wrap(n < buf.length / 2 ? Arrays.copyOf(buf, n) : buf, n);
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) return true;
+		if (!(o instanceof TextChunk)) return false;
+		final TextChunk other = (TextChunk) o;
+		if (length != other.length) return false;
+		for (int i = 0; i < length; i++)
+			if (chars[offset + i] != other.chars[other.offset + i]) return false;
+		return true;
+	}
+
+	/**
+	 * <p>The same hash code as the {@link String} with the same characters.</p>
+	 */
+	@Override
+	public int hashCode() {
+		int h = 0;
+		for (int i = 0; i < length; i++) h = 31 * h + chars[offset + i];
+		return h;
+	}
+
+	/**
+	 * <p>Lexicographic order of the UTF-16 code units, like {@link String#compareTo}.</p>
+	 */
+	public int compareTo(final TextChunk other) {
+		final int n = Math.min(length, other.length);
+		for (int i = 0; i < n; i++) {
+			final char a = chars[offset + i], b = other.chars[other.offset + i];
+			if (a != b) return a - b;
+		}
+		return length - other.length;
+	}
+}
@@ -5,39 +5,118 @@ use strict;
 
 my $n = 2;
 
-sub mkFun {
-    my @args = @_;
-    if (scalar @args > 1) {
-        my $t1 = shift @args;
-        my $t2 = mkFun(@args);
-        return "Fun<$t1, $t2>";
+# partial application class, nested in Fun$n
+sub mkPap {
+    my ($n, $crpargs) = @_;
+    my $copyargs = join("\n", map { "            all[n+" . ($_-1) . "] = arg$_;" } (1..$n-1));
+    return <<"PAP";
+    /**
+     * <p>A partial application that still needs $n arguments.</p>
+     *
+     * <p>It holds the function that was originally applied and an array that
+     * has room for all of its arguments, of which the first <tt>args.length-$n</tt>
+     * are already supplied. The first application of a further argument
+     * stores it in the array, so that a sequence of applications shares the array.
+     * Any further application of the same partial application works on a copy.</p>
+     */
+    final static class Pap<X> extends Fun$n<X> {
+        private final Lambda target;
+        private final Object[] args;
+        private volatile int extended = 0;
+        \@SuppressWarnings("rawtypes")
+        private static final java.util.concurrent.atomic.AtomicIntegerFieldUpdater<Pap> 
+            EXTENDED = java.util.concurrent.atomic.AtomicIntegerFieldUpdater.newUpdater(Pap.class, "extended");
+        Pap(final Lambda target, final Object[] args) {
+            this.target = target;
+            this.args = args;
+        }
+        final Lambda papTarget() { return target; }
+        final Object[] papExtend(final Object arg, final int arity) {
+            final int n = args.length - $n;
+            if (EXTENDED.compareAndSet(this, 0, 1)) {
+                args[n] = arg;
+                return args;
+            }
+            final Object[] copy = new Object[args.length];
+            System.arraycopy(args, 0, copy, 0, n);
+            copy[n] = arg;
+            return copy;
+        }
+        \@SuppressWarnings("unchecked")
+        final public X eval($crpargs, final Object arg1) {
+            final int n = args.length - $n;
+            final Object[] all;
+            if (EXTENDED.compareAndSet(this, 0, 1)) all = args;
+            else {
+                all = new Object[args.length];
+                System.arraycopy(args, 0, all, 0, n);
+            }
+$copyargs
+            return (X) target.evalPap(all, arg$n);
+        }
     }
-    else {
-        return shift @args;
+PAP
+}
+
+# apply$k for a function of arity $n, $k <= $n
+sub mkApplyK {
+    my ($n, $k) = @_;
+    my $r = $n - $k;
+    my $sig = join(",", ("Object") x $n);
+    my $kargs = join(",", map { "final Object arg$_" } (1..$k));
+    if ($r == 0) {
+        my $cargs = join(",", map { "arg$_" } (1..$k));
+        return <<"APPLY";
+    /**
+     * <p>Apply this function to all its arguments at once.</p>
+     *
+     * \@return the same as {\@link Fun$n#apply($sig)}
+     */
+    final public Delayed apply$k($kargs) {
+        return apply($cargs);
+    }
+APPLY
+    }
+    my $setargs = join("\n", map { "        args[i+" . ($_-1) . "] = arg$_;" } (2..$k));
+    return <<"APPLY";
+    /**
+     * <p>Apply this function to $k arguments at once.</p>
+     *
+     * <p>Like {\@link Fun$n#apply(Object)}, but the partial application
+     * is created in one step.</p>
+     *
+     * \@return an instance of type <tt>Fun$r</tt> that waits for the
+     * remaining arguments.
+     */
+    final public Fun$r<X> apply$k($kargs) {
+        final Object[] args = papExtend(arg1, $n);
+        final int i = args.length - $n;
+$setargs
+        return new Fun$r.Pap<X>(papTarget(), args);
     }
+APPLY
 }
 
-while ($n < 27) {
-    open J, ">frege/runtime/Fun$n.java" or die "can't open $!";
-    my @targs = map { "T$_" } (1..$n+1);
-    my $ext = mkFun(@targs);
-    my @xargs = map { "X$_" } (1..$n+1);
-    my @nargs = map {"final Object arg$_" } (1..$n);
-    my $cnargs = join (",", @nargs);
-    my @args  = map { "arg$_" } (1..$n);
-    my $crargs = join(",", reverse @args);
-    my $rt = $targs[$n];
-    my $ctargs = join (",", @targs);
-    my $cxargs = join (",", @xargs);
-    my $cargs  = join (",", @args);
-    # my $crargs = join (",", reverse @args);
-    my $p = $n-1;
-    my @ptargs = @targs; shift @ptargs;
-    my $cptargs = join(",", @ptargs);
-    my @pargs = map { "final Object arg$_" } (2..$n);
-    my @rpargs = reverse @pargs;
-    my $crpargs = join(",", @rpargs);
-    print J <<'LIZENZ';
+# applyN for a function of arity $n
+sub mkApplyN {
+    my ($n) = @_;
+    my $sig = join(",", ("Object") x $n);
+    my $cargs = join(",", map { "args[$_]" } (0..$n-1));
+    return <<"APPLY";
+    /**
+     * <p>Apply this function to any number of arguments.</p>
+     *
+     * <p>If the number of arguments matches the arity, this is the same as
+     * {\@link Fun$n#apply($sig)}.</p>
+     */
+    final public Applicable applyN(final Object... args) {
+        if (args.length == $n) return apply($cargs);
+        return super.applyN(args);
+    }
+APPLY
+}
+
+my $lizenz = <<'LIZENZ';
 /* «•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»«•»
 
     Copyright © 2011, Ingo Wechsung
@@ -76,7 +155,45 @@ while ($n < 27) {
 
 LIZENZ
 
-    print J "package frege.runtime;\r\n";
+sub mkFun {
+    my @args = @_;
+    if (scalar @args > 1) {
+        my $t1 = shift @args;
+        my $t2 = mkFun(@args);
+        return "Fun<$t1, $t2>";
+    }
+    else {
+        return shift @args;
+    }
+}
+
+while ($n < 27) {
+    open J, ">frege/runtime/Fun$n.java" or die "can't open $!";
+    my @targs = map { "T$_" } (1..$n+1);
+    my $ext = mkFun(@targs);
+    my @xargs = map { "X$_" } (1..$n+1);
+    my @nargs = map {"final Object arg$_" } (1..$n);
+    my $cnargs = join (",", @nargs);
+    my @args  = map { "arg$_" } (1..$n);
+    my $crargs = join(",", reverse @args);
+    my $rt = $targs[$n];
+    my $ctargs = join (",", @targs);
+    my $cxargs = join (",", @xargs);
+    my $cargs  = join (",", @args);
+    # my $crargs = join (",", reverse @args);
+    my $p = $n-1;
+    my @ptargs = @targs; shift @ptargs;
+    my $cptargs = join(",", @ptargs);
+    my @pargs = map { "final Object arg$_" } (2..$n);
+    my @rpargs = reverse @pargs;
+    my $envargs = join(",", map { "env[$_]" } reverse (1..$n));
+    my $papargs = join(",", "last", map { "args[$_]" } reverse (0..$n-2));
+    my $crpargs = join(",", @rpargs);
+    my $pap = $n < 26 ? mkPap($n, $crpargs) : "";
+    my $multi = join("", map { mkApplyK($n, $_) } (2..($n < 4 ? $n : 4))) . mkApplyN($n);
+    print J $lizenz;
+
+    print J "package frege.runtime;\n";
     print J <<"TEXT";
 /**
  * <p> Frege functions with arity $n. </p>
@@ -88,19 +205,19 @@ public abstract class Fun$n<X> extends Lambda {
    /**
      * <p>Apply this function to an argument.</p>
      *
-     * <p> This method creates an instance of {\@link Fun$p} that collects the
-     * remaining arguments and, when evaluated, invokes the {\@link Fun$n#eval} method of this
-     * class.</p>
+     * <p> This method creates a partial application, that is, an instance of {\@link Fun$p} that collects the
+     * remaining arguments and, when evaluated, invokes the <tt>eval</tt> method of the
+     * function that was originally applied.</p>
+     *
+     * <p> The partial application holds that function and the arguments
+     * in a flat array, so that applying the remaining arguments one at a time 
+     * does not create a chain of closures. </p>
      *
      * \@return an instance of type <tt>Fun$p</tt> that waits for the
      * remaining arguments to be supplied and calls back with all arguments.
      */
     final public Fun$p<X> apply(final Object arg1) {
-        return new Fun$p<X> () {
-            final public X eval($crpargs) {
-                return Fun$n.this.eval($crargs);
-            }
-        };
+        return new Fun$p.Pap<X>(papTarget(), papExtend(arg1, $n));
     }
     /**
      * <p>Apply this function to all its arguments at once.</p>
@@ -116,9 +233,24 @@ public abstract class Fun$n<X> extends Lambda {
      * \@return an instance of type {\@link Delayed} 
      */
     final public Delayed apply($cnargs) {
-        return new Delayed () {
-            final public X eval() { return Fun$n.this.eval($crargs); }
-        };
+        return new Eval<X>(this,$cargs);
+    }
+$multi    
+    /**
+     * <p>The lazy result of the application of a {\@link Fun$n} to all its arguments.</p>
+     *
+     * <p>The function and the arguments are kept in an array that is referenced
+     * by a final field, so that they are safely published to other threads.
+     * They are released once the value is evaluated.</p>
+     */
+    private final static class Eval<X> extends Delayed {
+        private final Object[] env;
+        Eval(final Fun$n<X> fun,$cnargs) {
+            env = new Object[] { fun,$cargs };
+        }
+        \@SuppressWarnings("unchecked")
+        final public X eval() { return ((Fun$n<X>) env[0]).eval($envargs); }
+        final protected void clear() { java.util.Arrays.fill(env, null); }
     }
     
 	/**
@@ -135,7 +267,14 @@ public abstract class Fun$n<X> extends Lambda {
 	final public  <B, Y extends B> Fun$n<B> toSuper(Fun$n<Y> it) {
     	return (Fun$n<B>) it;    	
     }
-
+    
+    /**
+     * <p>Run the function with arguments collected by a partial application.</p>
+     */
+    final Object evalPap(final Object[] args, final Object last) {
+        return eval($papargs);
+    }
+$pap
     /**
      * <p> Run the function. </p>
      *
@@ -166,3 +305,81 @@ TEXT
     close J;
     $n++;
 }
+
+# Functions of arity 1 and 2 on primitive types, like Int -> Int or Double -> Double -> Double
+my @prims = (
+    # suffix, java type, boxed type, frege type, forced method
+    [ "I", "int",    "Integer", "Int",    "forcedInt" ],
+    [ "L", "long",   "Long",    "Long",   "forcedLong" ],
+    [ "D", "double", "Double",  "Double", "forcedDouble" ],
+);
+
+foreach my $prim (@prims) {
+    my ($sfx, $jt, $bt, $ft, $forced) = @$prim;
+    my $meth = "eval" . ucfirst($jt);
+    foreach my $n (1, 2) {
+        my $cls = "Fun$n$sfx";
+        open J, ">frege/runtime/$cls.java" or die "can't open $!";
+        my @args   = map { "arg$_" } (1..$n);
+        my $rargs  = join(", ", reverse @args);
+        my $nargs  = join(", ", map { "final Object $_" } reverse @args);
+        my $pargs  = join(", ", map { "final $jt $_" } reverse @args);
+        my $cargs  = join(", ", map { "final $jt $_" } @args);
+        my $fargs  = join(", ", map { "Delayed.$forced($_)" } reverse @args);
+        my $apps   = join("", map { ".apply($_)" } @args);
+        my $ftype  = join(" -&gt; ", ($ft) x ($n+1));
+        print J $lizenz;
+        print J "package frege.runtime;\n";
+        print J <<"TEXT";
+/**
+ * <p> Frege functions of type <tt>$ftype</tt>. </p>
+ *
+ * <p> Such functions are strict in all arguments. They can run on unboxed
+ * arguments through {\@link $cls#$meth}, which returns an unboxed result.
+ * As a {\@link Fun$n}, they can also be used wherever an ordinary function
+ * is expected. </p>
+ *
+ * <p> See {\@link Fun1} for a general discussion of untyped function values. </p>
+ *
+ */
+public abstract class $cls extends Fun$n<$bt> {
+    /**
+     * <p> Run the function on unboxed arguments. </p>
+     *
+     * <p> The arguments are passed in reverse order, like in {\@link Fun$n#eval}.</p>
+     *
+     * <p>This method must be implemented by all subclasses.</p>
+     *
+     * \@return the result
+     */
+    abstract public $jt $meth($pargs);
+
+    /**
+     * <p> Run the function on boxed or lazy arguments. </p>
+     *
+     * <p> The arguments are evaluated and passed to {\@link $cls#$meth}.</p>
+     *
+     * \@return the boxed result
+     */
+    final public $bt eval($nargs) {
+        return $meth($fargs);
+    }
+
+    /**
+     * <p> Apply a function of type <tt>$ftype</tt> to unboxed arguments. </p>
+     *
+     * <p> If the function is a {\@link $cls}, this avoids any boxing and
+     * closure creation. Otherwise, the function is applied the usual way
+     * and the result is evaluated.</p>
+     *
+     * \@return the unboxed result
+     */
+    final public static $jt call(final Lambda f, $cargs) {
+        if (f instanceof $cls) return (($cls) f).$meth($rargs);
+        return Delayed.$forced(f${apps}.result());
+    }
+}
+TEXT
+        close J;
+    }
+}
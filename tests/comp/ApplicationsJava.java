@@ -0,0 +1,268 @@
+package tests.comp;
+
+import frege.runtime.Applicable;
+import frege.runtime.Delayed;
+import frege.runtime.Fun1;
+import frege.runtime.Fun2;
+import frege.runtime.Fun3;
+import frege.runtime.Fun4;
+import frege.runtime.Fun5;
+import frege.runtime.Fun6;
+import frege.runtime.Fun7;
+import frege.runtime.Fun8;
+import frege.runtime.Fun9;
+import frege.runtime.Fun10;
+import frege.runtime.Fun11;
+import frege.runtime.Fun12;
+import frege.runtime.Fun13;
+import frege.runtime.Fun14;
+import frege.runtime.Fun15;
+import frege.runtime.Fun16;
+import frege.runtime.Fun17;
+import frege.runtime.Fun18;
+import frege.runtime.Fun19;
+import frege.runtime.Fun20;
+import frege.runtime.Fun21;
+import frege.runtime.Fun22;
+import frege.runtime.Fun23;
+import frege.runtime.Fun24;
+import frege.runtime.Fun25;
+import frege.runtime.Fun26;
+import frege.runtime.Lambda;
+
+/**
+ * <p>Partial, exact and over-saturated applications of functions of
+ * arity 1 to 26, for Applications.fr</p>
+ *
+ * <p>The functions concatenate their arguments. A function that is applied to more
+ * arguments than its arity returns a function that concatenates the rest.</p>
+ *
+ */
+final public class ApplicationsJava {
+
+	/**
+	 * <p>A function of arity <code>n</code> that, after its own arguments,
+	 * takes <code>rest</code> more.</p>
+	 */
+	static Lambda fun(final int n, final int rest) {
+		switch (n) {
+			case 1: return new Fun1<Object>() {
+				public Object eval(final Object arg1) {
+					return concat(rest, arg1);
+				}
+			};
+			case 2: return new Fun2<Object>() {
+				public Object eval(final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2);
+				}
+			};
+			case 3: return new Fun3<Object>() {
+				public Object eval(final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3);
+				}
+			};
+			case 4: return new Fun4<Object>() {
+				public Object eval(final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4);
+				}
+			};
+			case 5: return new Fun5<Object>() {
+				public Object eval(final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5);
+				}
+			};
+			case 6: return new Fun6<Object>() {
+				public Object eval(final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6);
+				}
+			};
+			case 7: return new Fun7<Object>() {
+				public Object eval(final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7);
+				}
+			};
+			case 8: return new Fun8<Object>() {
+				public Object eval(final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8);
+				}
+			};
+			case 9: return new Fun9<Object>() {
+				public Object eval(final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9);
+				}
+			};
+			case 10: return new Fun10<Object>() {
+				public Object eval(final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10);
+				}
+			};
+			case 11: return new Fun11<Object>() {
+				public Object eval(final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11);
+				}
+			};
+			case 12: return new Fun12<Object>() {
+				public Object eval(final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12);
+				}
+			};
+			case 13: return new Fun13<Object>() {
+				public Object eval(final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13);
+				}
+			};
+			case 14: return new Fun14<Object>() {
+				public Object eval(final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14);
+				}
+			};
+			case 15: return new Fun15<Object>() {
+				public Object eval(final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15);
+				}
+			};
+			case 16: return new Fun16<Object>() {
+				public Object eval(final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16);
+				}
+			};
+			case 17: return new Fun17<Object>() {
+				public Object eval(final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17);
+				}
+			};
+			case 18: return new Fun18<Object>() {
+				public Object eval(final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18);
+				}
+			};
+			case 19: return new Fun19<Object>() {
+				public Object eval(final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19);
+				}
+			};
+			case 20: return new Fun20<Object>() {
+				public Object eval(final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20);
+				}
+			};
+			case 21: return new Fun21<Object>() {
+				public Object eval(final Object arg21,final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20,arg21);
+				}
+			};
+			case 22: return new Fun22<Object>() {
+				public Object eval(final Object arg22,final Object arg21,final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20,arg21,arg22);
+				}
+			};
+			case 23: return new Fun23<Object>() {
+				public Object eval(final Object arg23,final Object arg22,final Object arg21,final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20,arg21,arg22,arg23);
+				}
+			};
+			case 24: return new Fun24<Object>() {
+				public Object eval(final Object arg24,final Object arg23,final Object arg22,final Object arg21,final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20,arg21,arg22,arg23,arg24);
+				}
+			};
+			case 25: return new Fun25<Object>() {
+				public Object eval(final Object arg25,final Object arg24,final Object arg23,final Object arg22,final Object arg21,final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20,arg21,arg22,arg23,arg24,arg25);
+				}
+			};
+			case 26: return new Fun26<Object>() {
+				public Object eval(final Object arg26,final Object arg25,final Object arg24,final Object arg23,final Object arg22,final Object arg21,final Object arg20,final Object arg19,final Object arg18,final Object arg17,final Object arg16,final Object arg15,final Object arg14,final Object arg13,final Object arg12,final Object arg11,final Object arg10,final Object arg9,final Object arg8,final Object arg7,final Object arg6,final Object arg5,final Object arg4,final Object arg3,final Object arg2,final Object arg1) {
+					return concat(rest, arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8,arg9,arg10,arg11,arg12,arg13,arg14,arg15,arg16,arg17,arg18,arg19,arg20,arg21,arg22,arg23,arg24,arg25,arg26);
+				}
+			};
+			default: throw new IllegalArgumentException("no function of arity " + n);
+		}
+	}
+
+	/**
+	 * <p>The concatenation of the arguments, or, if more arguments follow,
+	 * a function that appends them.</p>
+	 */
+	private static Object concat(final int rest, final Object... args) {
+		final StringBuilder sb = new StringBuilder();
+		for (Object a : args) sb.append(Delayed.<String>forced(a));
+		if (rest == 0) return sb.toString();
+		return fun(rest + 1, 0).apply(sb.toString()).result();
+	}
+
+	private static String value(final Applicable a) {
+		return Delayed.<String>forced(a.result());
+	}
+
+	/**
+	 * <p>Apply the arguments in chunks of <code>k</code>,
+	 * with {@link Lambda#apply2}, {@link Lambda#apply3}, {@link Lambda#apply4}
+	 * or {@link Lambda#applyN}.</p>
+	 */
+	private static Applicable chunks(Applicable f, final Object[] args, final int k) {
+		int i = 0;
+		while (i < args.length) {
+			final Lambda l = Delayed.<Lambda>forced(f);
+			final int m = Math.min(k, args.length - i);
+			switch (m) {
+				case 1:  f = l.apply(args[i]); break;
+				case 2:  f = l.apply2(args[i], args[i+1]); break;
+				case 3:  f = l.apply3(args[i], args[i+1], args[i+2]); break;
+				case 4:  f = l.apply4(args[i], args[i+1], args[i+2], args[i+3]); break;
+				default:
+					final Object[] some = new Object[m];
+					System.arraycopy(args, i, some, 0, m);
+					f = l.applyN(some);
+			}
+			i += m;
+		}
+		return f;
+	}
+
+	/**
+	 * <p>Apply functions of all arities to as many arguments as they take,
+	 * and to 1 and 3 more, in every way.</p>
+	 *
+	 * <p>The arguments are given one at a time, all at once, in two parts
+	 * split at every position, and in chunks of 2 to 6.</p>
+	 *
+	 * @return the number of applications that gave a wrong result.
+	 */
+	public static int wrong() {
+		int wrong = 0;
+		for (int n = 1; n <= 26; n++) {
+			for (int rest : new int[] { 0, 1, 3 }) {
+				final Object[] args = new Object[n + rest];
+				final StringBuilder sb = new StringBuilder();
+				for (int i = 0; i < args.length; i++) {
+					args[i] = Integer.toString(i) + ",";
+					sb.append(args[i]);
+				}
+				final String expected = sb.toString();
+				final Lambda f = fun(n, rest);
+
+				Applicable a = f;
+				for (Object x : args) a = a.apply(x);
+				if (!expected.equals(value(a))) wrong++;
+
+				if (!expected.equals(value(f.applyN(args)))) wrong++;
+
+				for (int s = 0; s < args.length; s++) {
+					final Object[] first = new Object[s];
+					final Object[] second = new Object[args.length - s];
+					System.arraycopy(args, 0, first, 0, s);
+					System.arraycopy(args, s, second, 0, second.length);
+					final Lambda p = Delayed.<Lambda>forced(f.applyN(first));
+					if (!expected.equals(value(p.applyN(second)))) wrong++;
+					// a partial application can be applied again
+					if (s < n && !expected.equals(value(p.applyN(second)))) wrong++;
+				}
+
+				for (int k = 2; k <= 6; k++)
+					if (!expected.equals(value(chunks(f, args, k)))) wrong++;
+			}
+		}
+		return wrong;
+	}
+}
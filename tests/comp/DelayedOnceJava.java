@@ -0,0 +1,107 @@
+package tests.comp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import frege.runtime.Delayed;
+import frege.runtime.Undefined;
+
+/**
+ * <p>Lazy values that count how often they are evaluated, for DelayedOnce.fr</p>
+ *
+ */
+final public class DelayedOnceJava {
+
+	/**
+	 * <p>Let a number of threads demand the same lazy value at the same time.</p>
+	 *
+	 * <p>The value takes another step through an intermediate lazy value.
+	 * The first step waits until all threads have started, so that
+	 * they find the value black holed.</p>
+	 *
+	 * @return the number of evaluations of both steps,
+	 *         or -1 if the threads did not all get the same value.
+	 */
+	public static int forceConcurrently(final int threads) throws InterruptedException {
+		final AtomicInteger evals = new AtomicInteger(0);
+		final CountDownLatch started = new CountDownLatch(threads);
+		final Delayed second = new Delayed() {
+			public Object eval() {
+				evals.incrementAndGet();
+				return new StringBuilder("evaluated");
+			}
+		};
+		final Delayed first = new Delayed() {
+			public Object eval() {
+				evals.incrementAndGet();
+				try {
+					started.await();
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return second;
+			}
+		};
+		final Object[] results = new Object[threads];
+		final Thread[] forcers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int me = i;
+			forcers[i] = new Thread(new Runnable() {
+				public void run() {
+					started.countDown();
+					results[me] = first.call();
+				}
+			});
+			forcers[i].start();
+		}
+		for (Thread t : forcers) t.join();
+		for (Object r : results)
+			if (r == null || r != results[0] || r != second.call()) return -1;
+		return evals.get();
+	}
+
+	/**
+	 * <p>Demand a lazy value while it is being evaluated, on the same thread.</p>
+	 *
+	 * @return <b>true</b> if the inner demand fails with a {@link ClassCastException},
+	 *         like it does in compiled code, and the outer evaluation still completes.
+	 */
+	public static boolean reenter() {
+		final boolean[] failed = { false };
+		final Delayed loop = new Delayed() {
+			public Object eval() {
+				try {
+					final String s = Delayed.<String>forced(this);
+					return "not a black hole: " + s;
+				} catch (ClassCastException e) {
+					failed[0] = true;
+				}
+				return "done";
+			}
+		};
+		return "done".equals(loop.call()) && failed[0];
+	}
+
+	/**
+	 * <p>Demand lazy values that evaluate to each other, 
+	 * like <code>let a = b; b = a</code>.</p>
+	 *
+	 * @return <b>true</b> if every demand fails with {@link Undefined},
+	 *         also after the first one.
+	 */
+	public static boolean mutual() {
+		final Delayed[] ab = new Delayed[2];
+		ab[0] = new Delayed() { public Object eval() { return ab[1]; } };
+		ab[1] = new Delayed() { public Object eval() { return ab[0]; } };
+		int failed = 0;
+		for (int i = 0; i < 3; i++) {
+			try {
+				ab[i % 2].call();
+			} catch (Undefined e) {
+				failed++;
+			}
+		}
+		return failed == 3;
+	}
+}
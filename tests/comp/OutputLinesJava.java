@@ -0,0 +1,48 @@
+package tests.comp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import frege.runtime.Output;
+
+/**
+ * <p>Long lines through line flushed output, for OutputLines.fr</p>
+ *
+ */
+final public class OutputLinesJava {
+
+	/**
+	 * <p>An output stream that counts bytes and flushes.</p>
+	 */
+	private static final class Counter extends OutputStream {
+		long bytes = 0;
+		int flushes = 0;
+		public void write(int b) { bytes++; }
+		public void write(byte[] b, int off, int len) { bytes += len; }
+		public void flush() { flushes++; }
+	}
+
+	/**
+	 * <p>Write a string of the given length without a newline through an {@link Output}
+	 * with policy <code>line</code> and an 8k buffer, then a string with a newline at the end.</p>
+	 *
+	 * <p>The first string must be searched for newlines only once, 
+	 * that is, in time linear in its length, and must not be flushed.</p>
+	 *
+	 * @return the number of characters searched for newlines per character written,
+	 *         or -1 if the bytes or flushes are not as expected.
+	 */
+	public static double writeLong(final int len) throws IOException {
+		final char[] cs = new char[len];
+		java.util.Arrays.fill(cs, 'x');
+		final String s = new String(cs);
+		final Counter c = new Counter();
+		final Output o = new Output(c, Output.Flush.LINE, 8192);
+		o.write(s, 0, len);
+		final long scanned = o.scanned();
+		if (c.flushes != 0) return -1;
+		o.write(s.substring(0, 100) + "\n", 0, 101);
+		if (c.flushes != 1 || c.bytes != len + 101L) return -1;
+		return (double) scanned / len;
+	}
+}
@@ -0,0 +1,117 @@
+package tests.comp;
+
+import frege.runtime.Delayed;
+import frege.runtime.DelayedDouble;
+import frege.runtime.DelayedInt;
+import frege.runtime.DelayedLong;
+import frege.runtime.Fun1;
+import frege.runtime.Fun1D;
+import frege.runtime.Fun1I;
+import frege.runtime.Fun1L;
+import frege.runtime.Fun2;
+import frege.runtime.Fun2D;
+import frege.runtime.Fun2I;
+import frege.runtime.Fun2L;
+
+/**
+ * <p>Functions specialized for <code>int</code>, <code>long</code> and <code>double</code>,
+ * for PrimitiveFunctions.fr</p>
+ *
+ * <p>The 2-argument functions subtract, so that the order of the arguments matters.</p>
+ *
+ */
+final public class PrimitiveFunctionsJava {
+
+	/**
+	 * <p>Run <code>Int</code> functions through <code>eval</code> with boxed and lazy arguments,
+	 * through <code>call</code>, and through <code>call</code> with functions
+	 * that are not specialized.</p>
+	 *
+	 * @return <b>true</b> if all give the same results.
+	 */
+	public static boolean ints() {
+		final Fun1I inc = new Fun1I() {
+			public int evalInt(final int a) { return a + 1; }
+		};
+		final Fun2I sub = new Fun2I() {
+			public int evalInt(final int b, final int a) { return a - b; }
+		};
+		final Fun1<Integer> ginc = new Fun1<Integer>() {
+			public Integer eval(final Object a) { return Delayed.<Integer>forced(a) + 1; }
+		};
+		final Fun2<Integer> gsub = new Fun2<Integer>() {
+			public Integer eval(final Object b, final Object a) {
+				return Delayed.<Integer>forced(a) - Delayed.<Integer>forced(b);
+			}
+		};
+		final DelayedInt three = new DelayedInt() {
+			public int evalInt() { return 3; }
+		};
+		return inc.eval(3) == 4 && inc.eval(three) == 4
+			&& Fun1I.call(inc, 3) == 4 && Fun1I.call(ginc, 3) == 4
+			&& Delayed.<Integer>forced(inc.apply(3).result()) == 4
+			&& sub.eval(3, 10) == 7 && sub.eval(three, 10) == 7
+			&& Fun2I.call(sub, 10, 3) == 7 && Fun2I.call(gsub, 10, 3) == 7
+			&& Delayed.<Integer>forced(sub.apply(10).apply(3).result()) == 7
+			&& Delayed.<Integer>forced(sub.apply(10, 3).result()) == 7;
+	}
+
+	/**
+	 * <p>Like {@link PrimitiveFunctionsJava#ints}, for <code>Long</code>.</p>
+	 */
+	public static boolean longs() {
+		final long big = 1L << 40;
+		final Fun1L inc = new Fun1L() {
+			public long evalLong(final long a) { return a + 1; }
+		};
+		final Fun2L sub = new Fun2L() {
+			public long evalLong(final long b, final long a) { return a - b; }
+		};
+		final Fun1<Long> ginc = new Fun1<Long>() {
+			public Long eval(final Object a) { return Delayed.<Long>forced(a) + 1; }
+		};
+		final Fun2<Long> gsub = new Fun2<Long>() {
+			public Long eval(final Object b, final Object a) {
+				return Delayed.<Long>forced(a) - Delayed.<Long>forced(b);
+			}
+		};
+		final DelayedLong one = new DelayedLong() {
+			public long evalLong() { return 1L; }
+		};
+		return inc.eval(big) == big + 1 && inc.eval(one) == 2L
+			&& Fun1L.call(inc, big) == big + 1 && Fun1L.call(ginc, big) == big + 1
+			&& Delayed.<Long>forced(inc.apply(big).result()) == big + 1
+			&& sub.eval(1L, big) == big - 1 && sub.eval(one, big) == big - 1
+			&& Fun2L.call(sub, big, 1L) == big - 1 && Fun2L.call(gsub, big, 1L) == big - 1
+			&& Delayed.<Long>forced(sub.apply(big).apply(1L).result()) == big - 1;
+	}
+
+	/**
+	 * <p>Like {@link PrimitiveFunctionsJava#ints}, for <code>Double</code>.</p>
+	 */
+	public static boolean doubles() {
+		final Fun1D half = new Fun1D() {
+			public double evalDouble(final double a) { return a / 2; }
+		};
+		final Fun2D sub = new Fun2D() {
+			public double evalDouble(final double b, final double a) { return a - b; }
+		};
+		final Fun1<Double> ghalf = new Fun1<Double>() {
+			public Double eval(final Object a) { return Delayed.<Double>forced(a) / 2; }
+		};
+		final Fun2<Double> gsub = new Fun2<Double>() {
+			public Double eval(final Object b, final Object a) {
+				return Delayed.<Double>forced(a) - Delayed.<Double>forced(b);
+			}
+		};
+		final DelayedDouble quarter = new DelayedDouble() {
+			public double evalDouble() { return 0.25; }
+		};
+		return half.eval(3.0) == 1.5 && half.eval(quarter) == 0.125
+			&& Fun1D.call(half, 3.0) == 1.5 && Fun1D.call(ghalf, 3.0) == 1.5
+			&& Delayed.<Double>forced(half.apply(3.0).result()) == 1.5
+			&& sub.eval(0.25, 1.0) == 0.75 && sub.eval(quarter, 1.0) == 0.75
+			&& Fun2D.call(sub, 1.0, 0.25) == 0.75 && Fun2D.call(gsub, 1.0, 0.25) == 0.75
+			&& Delayed.<Double>forced(sub.apply(1.0).apply(0.25).result()) == 0.75;
+	}
+}
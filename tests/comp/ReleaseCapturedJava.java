@@ -0,0 +1,37 @@
+package tests.comp;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * <p>Watch values until they are garbage collected, for ReleaseCaptured.fr</p>
+ *
+ */
+final public class ReleaseCapturedJava {
+
+	private final WeakReference<Object> ref;
+
+	private ReleaseCapturedJava(final Object o) {
+		ref = new WeakReference<Object>(o);
+	}
+
+	/**
+	 * <p>Start to watch a value.</p>
+	 */
+	public static ReleaseCapturedJava watch(final Object o) {
+		return new ReleaseCapturedJava(o);
+	}
+
+	/**
+	 * <p>Run the garbage collector a few times, until the watched value is gone.</p>
+	 *
+	 * @return <b>true</b> if the watched value was collected.
+	 */
+	public boolean collected() throws InterruptedException {
+		for (int i = 0; i < 10; i++) {
+			if (ref.get() == null) return true;
+			System.gc();
+			Thread.sleep(50);
+		}
+		return ref.get() == null;
+	}
+}
@@ -0,0 +1,110 @@
+package tests.comp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import frege.runtime.Delayed;
+import frege.runtime.DelayedDouble;
+import frege.runtime.DelayedInt;
+import frege.runtime.DelayedLong;
+import frege.runtime.Undefined;
+
+/**
+ * <p>Unboxed lazy values, for UnboxedLazy.fr</p>
+ *
+ */
+final public class UnboxedLazyJava {
+
+	/**
+	 * <p>Force lazy <code>int</code>, <code>long</code> and <code>double</code> values
+	 * unboxed, through {@link Delayed#forcedInt} and friends, and boxed.</p>
+	 *
+	 * @return <b>true</b> if all ways give the same value, and each value is evaluated once.
+	 */
+	public static boolean forceAll() {
+		final AtomicInteger evals = new AtomicInteger(0);
+		final DelayedInt i = new DelayedInt() {
+			public int evalInt() { evals.incrementAndGet(); return 42; }
+		};
+		final DelayedLong l = new DelayedLong() {
+			public long evalLong() { evals.incrementAndGet(); return 1L << 40; }
+		};
+		final DelayedDouble d = new DelayedDouble() {
+			public double evalDouble() { evals.incrementAndGet(); return 0.5; }
+		};
+		final boolean ints = i.callInt() == 42 && Delayed.forcedInt(i) == 42
+				&& (Integer) i.call() == 42 && i.callInt() == 42;
+		// boxed first
+		final boolean longs = (Long) l.call() == 1L << 40 && l.callLong() == 1L << 40
+				&& Delayed.forcedLong(l) == 1L << 40;
+		final boolean doubles = Delayed.forcedDouble(d) == 0.5 && d.callDouble() == 0.5
+				&& (Double) d.call() == 0.5;
+		return ints && longs && doubles && evals.get() == 3;
+	}
+
+	/**
+	 * <p>Let a number of threads demand the same lazy <code>int</code> at the same time.</p>
+	 *
+	 * @return the number of evaluations, or -1 if a thread got another value.
+	 */
+	public static int forceConcurrently(final int threads) throws InterruptedException {
+		final AtomicInteger evals = new AtomicInteger(0);
+		final CountDownLatch started = new CountDownLatch(threads);
+		final DelayedInt value = new DelayedInt() {
+			public int evalInt() {
+				evals.incrementAndGet();
+				try {
+					started.await();
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 4711;
+			}
+		};
+		final int[] results = new int[threads];
+		final Thread[] forcers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int me = i;
+			forcers[i] = new Thread(new Runnable() {
+				public void run() {
+					started.countDown();
+					results[me] = me % 2 == 0 ? value.callInt() : Delayed.forcedInt(value);
+				}
+			});
+			forcers[i].start();
+		}
+		for (Thread t : forcers) t.join();
+		for (int r : results) if (r != 4711) return -1;
+		return evals.get();
+	}
+
+	/**
+	 * <p>Force lazy values that demand themselves while they are evaluated.</p>
+	 *
+	 * @return <b>true</b> if forcing each one fails with {@link Undefined}, also when tried again.
+	 */
+	public static boolean blackHoles() {
+		final DelayedInt i = new DelayedInt() {
+			public int evalInt() { return callInt() + 1; }
+		};
+		final DelayedLong l = new DelayedLong() {
+			public long evalLong() { return Delayed.forcedLong(this) + 1; }
+		};
+		final DelayedDouble d = new DelayedDouble() {
+			public double evalDouble() { return callDouble() + 1; }
+		};
+		return blackHole(i) && blackHole(l) && blackHole(d)
+				&& blackHole(i) && blackHole(l) && blackHole(d);
+	}
+
+	private static boolean blackHole(final Delayed x) {
+		try {
+			x.call();
+			return false;
+		}
+		catch (Undefined u) {
+			return u.getMessage().startsWith("black hole");
+		}
+	}
+}